@@ -0,0 +1,62 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the StatefulJ Benchmarks at 1, 4 and 16 threads with the GC profiler enabled.
+ * Each run reports throughput, latency percentiles (sample mode) and the allocation rate
+ * per operation.  Results are written as JSON to statefulj-benchmarks-&lt;threads&gt;t.json.
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl statefulj-benchmarks -am package
+ * java -jar statefulj-benchmarks/target/benchmarks.jar [include regexp]
+ * </pre>
+ *
+ * The Mongo Benchmarks start an embedded mongod.  To benchmark against an already running
+ * mongod, set the system property {@value org.statefulj.benchmarks.mongo.MongoBenchmarkContext#MONGO_PORT_PROPERTY}
+ *
+ * @author Andrew Hall
+ *
+ */
+public class BenchmarkRunner {
+
+	private static final int[] THREADS = { 1, 4, 16 };
+
+	private static final String DEFAULT_INCLUDE = "org\\.statefulj\\.benchmarks\\..*";
+
+	public static void main(String[] args) throws RunnerException {
+		String include = (args.length > 0) ? args[0] : DEFAULT_INCLUDE;
+		for(int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(include)
+					.threads(threads)
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON)
+					.result("statefulj-benchmarks-" + threads + "t.json")
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
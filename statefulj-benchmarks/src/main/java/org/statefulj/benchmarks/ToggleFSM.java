@@ -0,0 +1,78 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks;
+
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.Persister;
+
+/**
+ * Builds the FSM exercised by all the Benchmarks.  The FSM consists of two States which
+ * "toggle" back and forth on every Event, so every invocation of onEvent results in a
+ * persisted State change
+ *
+ * @author Andrew Hall
+ *
+ */
+public class ToggleFSM {
+
+	public static final String STATE_A = "stateA";
+
+	public static final String STATE_B = "stateB";
+
+	public static final String TOGGLE = "toggle";
+
+	/**
+	 * Build the Toggle FSM
+	 *
+	 * @param clazz Class of the Stateful Entity
+	 * @param name Name of the FSM
+	 * @param persister Persister under test
+	 * @param retryAttempts Number of Retry Attempts.  A value of -1 indicates unlimited Attempts
+	 * @return FSM
+	 */
+	public static <T> FSM<T> build(Class<T> clazz, String name, Persister<T> persister, int retryAttempts) {
+		return build(clazz, name, persister, retryAttempts, false);
+	}
+
+	/**
+	 * Build the Toggle FSM, optionally compiling it into a
+	 * {@link org.statefulj.fsm.model.impl.TransitionTable}
+	 *
+	 * @param clazz Class of the Stateful Entity
+	 * @param name Name of the FSM
+	 * @param persister Persister under test
+	 * @param retryAttempts Number of Retry Attempts.  A value of -1 indicates unlimited Attempts
+	 * @param compiled Whether to compile the FSM
+	 * @return FSM
+	 */
+	public static <T> FSM<T> build(Class<T> clazz, String name, Persister<T> persister, int retryAttempts, boolean compiled) {
+		return FSM.FSMBuilder
+				.newBuilder(clazz)
+				.setName(name)
+				.setPerister(persister)
+				.setRetryAttempts(retryAttempts)
+				.setCompiled(compiled)
+				.buildState(STATE_A, true)
+					.addTransition(TOGGLE, STATE_B)
+				.done()
+				.buildState(STATE_B)
+					.addTransition(TOGGLE, STATE_A)
+				.done()
+				.build();
+	}
+}
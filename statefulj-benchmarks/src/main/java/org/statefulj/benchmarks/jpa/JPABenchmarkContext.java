@@ -0,0 +1,136 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.jpa;
+
+import java.util.LinkedList;
+import java.util.Properties;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.statefulj.benchmarks.ToggleFSM;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.persistence.jpa.JPAPerister;
+
+/**
+ * Wires up an in-memory H2 database, Hibernate and a {@link JPAPerister} backed FSM
+ *
+ * @author Andrew Hall
+ *
+ */
+public class JPABenchmarkContext {
+
+	private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+
+	private EntityManager entityManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	private FSM<JPAEntity> fsm;
+
+	public void start() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:statefulj-benchmarks;DB_CLOSE_DELAY=-1",
+				"sa",
+				"");
+		dataSource.setDriverClassName("org.h2.Driver");
+
+		Properties jpaProperties = new Properties();
+		jpaProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+		jpaProperties.setProperty("hibernate.hbm2ddl.auto", "create");
+
+		this.entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+		this.entityManagerFactoryBean.setDataSource(dataSource);
+		this.entityManagerFactoryBean.setPackagesToScan(JPAEntity.class.getPackage().getName());
+		this.entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+		this.entityManagerFactoryBean.setJpaProperties(jpaProperties);
+		this.entityManagerFactoryBean.afterPropertiesSet();
+
+		EntityManagerFactory entityManagerFactory = this.entityManagerFactoryBean.getObject();
+		JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+
+		this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+		JPAPerister<JPAEntity> persister = new JPAPerister<JPAEntity>(
+				new LinkedList<State<JPAEntity>>(),
+				null,
+				null,
+				JPAEntity.class,
+				this.entityManager,
+				transactionManager);
+
+		this.fsm = ToggleFSM.build(JPAEntity.class, "JPAFSM", persister, -1);
+	}
+
+	public void stop() {
+		this.entityManagerFactoryBean.destroy();
+	}
+
+	/**
+	 * Persist a new Entity
+	 *
+	 * @return Id of the new Entity
+	 */
+	public Long createEntity() {
+		return this.transactionTemplate.execute(new TransactionCallback<Long>() {
+
+			@Override
+			public Long doInTransaction(TransactionStatus status) {
+				JPAEntity entity = new JPAEntity();
+				entityManager.persist(entity);
+				return entity.getId();
+			}
+
+		});
+	}
+
+	/**
+	 * Load the Entity and pass it the Event inside a single transaction - mirroring
+	 * how the Framework harness processes an Event
+	 *
+	 * @param id Id of the Entity
+	 * @param event The Event
+	 * @return Name of the resulting State
+	 */
+	public String onEvent(final Long id, final String event) {
+		return this.transactionTemplate.execute(new TransactionCallback<String>() {
+
+			@Override
+			public String doInTransaction(TransactionStatus status) {
+				try {
+					JPAEntity entity = entityManager.find(JPAEntity.class, id);
+					return fsm.onEvent(entity, event).getName();
+				} catch (TooBusyException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+		});
+	}
+}
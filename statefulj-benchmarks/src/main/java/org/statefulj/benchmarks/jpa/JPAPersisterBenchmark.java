@@ -0,0 +1,97 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.jpa;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statefulj.benchmarks.ToggleFSM;
+
+/**
+ * Benchmarks {@link org.statefulj.fsm.FSM#onEvent} backed by the
+ * {@link org.statefulj.persistence.jpa.JPAPerister} on an embedded H2 database.  Each
+ * operation loads the Entity and transitions it within its own transaction.
+ *
+ * "uncontended" transitions an Entity owned by the benchmark thread.  "contended" fires
+ * events from four threads at a single shared row, exercising the row lock and the
+ * StaleState retry loop
+ *
+ * @author Andrew Hall
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class JPAPersisterBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ContextState {
+
+		JPABenchmarkContext context;
+
+		Long sharedId;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.context = new JPABenchmarkContext();
+			this.context.start();
+			this.sharedId = this.context.createEntity();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			this.context.stop();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class EntityState {
+
+		Long id;
+
+		@Setup(Level.Trial)
+		public void setUp(ContextState contextState) {
+			this.id = contextState.context.createEntity();
+		}
+	}
+
+	@Benchmark
+	public String uncontended(ContextState contextState, EntityState entityState) {
+		return contextState.context.onEvent(entityState.id, ToggleFSM.TOGGLE);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String contended(ContextState contextState) {
+		return contextState.context.onEvent(contextState.sharedId, ToggleFSM.TOGGLE);
+	}
+}
@@ -0,0 +1,129 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.memory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.statefulj.benchmarks.ToggleFSM;
+import org.statefulj.fsm.EventKey;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+/**
+ * Verifies that, once warmed up, processing an Event allocates nothing.  The FSM is compiled,
+ * the Event is passed as an {@link EventKey} and no parameters are passed, so the only
+ * objects touched per Event are the ones built when the FSM was built.
+ *
+ * Run with the GC profiler; gc.alloc.rate.norm should be ~0 B/op for every benchmark.  The
+ * main method runs the benchmarks and fails if any of them allocates:
+ *
+ * <pre>
+ * java -cp statefulj-benchmarks/target/benchmarks.jar org.statefulj.benchmarks.memory.AllocationBenchmark
+ * </pre>
+ *
+ * @author Andrew Hall
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class AllocationBenchmark {
+
+	// Allow for JMH's own bookkeeping, which is amortized to well under a byte per operation
+	//
+	private static final double MAX_BYTES_PER_EVENT = 1.0;
+
+	private static final String ALLOC_RATE_NORM = "\u00b7gc.alloc.rate.norm";
+
+	@State(Scope.Thread)
+	public static class FSMState {
+
+		FSM<MemoryEntity> fsm;
+
+		EventKey toggle;
+
+		MemoryEntity entity;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.fsm = ToggleFSM.build(
+					MemoryEntity.class,
+					"AllocationFSM",
+					new MemoryPersisterImpl<MemoryEntity>(),
+					-1,
+					true);
+			this.toggle = this.fsm.getEventKey(ToggleFSM.TOGGLE);
+			this.entity = new MemoryEntity();
+		}
+	}
+
+	@Benchmark
+	public org.statefulj.fsm.model.State<MemoryEntity> eventKey(FSMState fsmState) throws TooBusyException {
+		return fsmState.fsm.onEvent(fsmState.entity, fsmState.toggle);
+	}
+
+	@Benchmark
+	public org.statefulj.fsm.model.State<MemoryEntity> eventName(FSMState fsmState) throws TooBusyException {
+		return fsmState.fsm.onEvent(fsmState.entity, ToggleFSM.TOGGLE);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(AllocationBenchmark.class.getName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		boolean failed = false;
+		for(RunResult runResult : new Runner(options).run()) {
+			Result<?> allocated = runResult.getSecondaryResults().get(ALLOC_RATE_NORM);
+			String benchmark = runResult.getParams().getBenchmark();
+			if (allocated == null) {
+				System.err.println(benchmark + ": no allocation profile was recorded");
+				failed = true;
+			} else if (allocated.getScore() > MAX_BYTES_PER_EVENT) {
+				System.err.println(benchmark + ": allocated " + allocated.getScore() + " B/event");
+				failed = true;
+			} else {
+				System.out.println(benchmark + ": allocated " + allocated.getScore() + " B/event");
+			}
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+}
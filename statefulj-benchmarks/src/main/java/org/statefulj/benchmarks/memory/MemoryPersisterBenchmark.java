@@ -0,0 +1,94 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.memory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statefulj.benchmarks.ToggleFSM;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+/**
+ * Benchmarks {@link org.statefulj.fsm.FSM#onEvent} backed by the {@link MemoryPersisterImpl}.
+ *
+ * "uncontended" fires events at an Entity owned by the benchmark thread.  "contended" fires
+ * events from four threads at a single shared Entity, exercising the StaleState retry loop
+ *
+ * @author Andrew Hall
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MemoryPersisterBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class FSMState {
+
+		FSM<MemoryEntity> fsm;
+
+		MemoryEntity shared;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.fsm = ToggleFSM.build(
+					MemoryEntity.class,
+					"MemoryFSM",
+					new MemoryPersisterImpl<MemoryEntity>(),
+					-1);
+			this.shared = new MemoryEntity();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class EntityState {
+
+		MemoryEntity entity;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.entity = new MemoryEntity();
+		}
+	}
+
+	@Benchmark
+	public String uncontended(FSMState fsmState, EntityState entityState) throws TooBusyException {
+		return fsmState.fsm.onEvent(entityState.entity, ToggleFSM.TOGGLE).getName();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String contended(FSMState fsmState) throws TooBusyException {
+		return fsmState.fsm.onEvent(fsmState.shared, ToggleFSM.TOGGLE).getName();
+	}
+}
@@ -0,0 +1,125 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.mongo;
+
+import java.io.IOException;
+import java.util.LinkedList;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.statefulj.benchmarks.ToggleFSM;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.persistence.mongo.MongoPersister;
+
+import com.mongodb.MongoClient;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+/**
+ * Wires up a {@link MongoPersister} backed FSM.  Unless the {@value #MONGO_PORT_PROPERTY} system
+ * property is set, an embedded mongod is started on a free port
+ *
+ * @author Andrew Hall
+ *
+ */
+public class MongoBenchmarkContext {
+
+	public static final String MONGO_PORT_PROPERTY = "statefulj.benchmarks.mongo.port";
+
+	private static final String DB_NAME = "statefulj-benchmarks";
+
+	private MongodExecutable mongodExecutable;
+
+	private MongodProcess mongodProcess;
+
+	private MongoClient mongoClient;
+
+	private MongoTemplate mongoTemplate;
+
+	private GenericApplicationContext appContext;
+
+	private FSM<MongoEntity> fsm;
+
+	public void start() throws IOException {
+		String port = System.getProperty(MONGO_PORT_PROPERTY);
+		if (port == null) {
+			int freePort = Network.getFreeServerPort();
+			IMongodConfig config = new MongodConfigBuilder()
+					.version(Version.Main.V2_6)
+					.net(new Net(freePort, Network.localhostIsIPv6()))
+					.build();
+			this.mongodExecutable = MongodStarter.getDefaultInstance().prepare(config);
+			this.mongodProcess = this.mongodExecutable.start();
+			this.mongoClient = new MongoClient("localhost", freePort);
+		} else {
+			this.mongoClient = new MongoClient("localhost", Integer.parseInt(port));
+		}
+
+		this.mongoTemplate = new MongoTemplate(this.mongoClient, DB_NAME);
+		this.mongoTemplate.getDb().dropDatabase();
+
+		MongoPersister<MongoEntity> persister = new MongoPersister<MongoEntity>(
+				new LinkedList<State<MongoEntity>>(),
+				null,
+				MongoEntity.class,
+				this.mongoTemplate);
+
+		// The MongoPersister registers its cascade support as an ApplicationListener, so
+		// we need an ApplicationContext for the MongoTemplate to publish its events to
+		//
+		this.appContext = new GenericApplicationContext();
+		persister.postProcessBeanDefinitionRegistry(this.appContext);
+		this.appContext.refresh();
+		this.mongoTemplate.setApplicationContext(this.appContext);
+
+		this.fsm = ToggleFSM.build(MongoEntity.class, "MongoFSM", persister, -1);
+	}
+
+	public void stop() {
+		this.appContext.close();
+		this.mongoClient.close();
+		if (this.mongodProcess != null) {
+			this.mongodProcess.stop();
+			this.mongodExecutable.stop();
+		}
+	}
+
+	/**
+	 * Save a new Entity - cascading the creation of its StateDocument
+	 *
+	 * @return The new Entity
+	 */
+	public MongoEntity createEntity() {
+		MongoEntity entity = new MongoEntity();
+		this.mongoTemplate.save(entity);
+		return entity;
+	}
+
+	public String onEvent(MongoEntity entity, String event) throws TooBusyException {
+		return this.fsm.onEvent(entity, event).getName();
+	}
+}
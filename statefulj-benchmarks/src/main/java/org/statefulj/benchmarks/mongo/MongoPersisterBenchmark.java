@@ -0,0 +1,95 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.mongo;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statefulj.benchmarks.ToggleFSM;
+import org.statefulj.fsm.TooBusyException;
+
+/**
+ * Benchmarks {@link org.statefulj.fsm.FSM#onEvent} backed by the
+ * {@link org.statefulj.persistence.mongo.MongoPersister}.
+ *
+ * "uncontended" fires events at an Entity owned by the benchmark thread.  "contended" fires
+ * events from every thread at a single shared Entity, exercising the StaleState retry loop
+ *
+ * @author Andrew Hall
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MongoPersisterBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ContextState {
+
+		MongoBenchmarkContext context;
+
+		MongoEntity shared;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			this.context = new MongoBenchmarkContext();
+			this.context.start();
+			this.shared = this.context.createEntity();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			this.context.stop();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class EntityState {
+
+		MongoEntity entity;
+
+		@Setup(Level.Trial)
+		public void setUp(ContextState contextState) {
+			this.entity = contextState.context.createEntity();
+		}
+	}
+
+	@Benchmark
+	public String uncontended(ContextState contextState, EntityState entityState) throws TooBusyException {
+		return contextState.context.onEvent(entityState.entity, ToggleFSM.TOGGLE);
+	}
+
+	@Benchmark
+	public String contended(ContextState contextState) throws TooBusyException {
+		return contextState.context.onEvent(contextState.shared, ToggleFSM.TOGGLE);
+	}
+}
@@ -0,0 +1,105 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.benchmarks.reflect;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.statefulj.common.utils.FieldAccessor;
+
+/**
+ * Compares reading and writing a State field through a {@link FieldAccessor}, as the Persisters do,
+ * against {@link Field#get(Object)}/{@link Field#set(Object, Object)} and plain field access.
+ *
+ * The FieldAccessor's MethodHandles are held in instance fields, so the JIT can't treat them as
+ * constants; these numbers, not constant folding, are the case for the FieldAccessor
+ *
+ * @author Andrew Hall
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class FieldAccessorBenchmark {
+
+	public static class Entity {
+
+		private String state = "stateA";
+	}
+
+	private Entity entity;
+
+	private Field field;
+
+	private FieldAccessor<String> accessor;
+
+	private String next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws NoSuchFieldException {
+		this.entity = new Entity();
+		this.field = Entity.class.getDeclaredField("state");
+		this.field.setAccessible(true);
+		this.accessor = FieldAccessor.of(this.field);
+		this.next = "stateB";
+	}
+
+	@Benchmark
+	public String directGet() {
+		return this.entity.state;
+	}
+
+	@Benchmark
+	public String reflectionGet() throws IllegalAccessException {
+		return (String)this.field.get(this.entity);
+	}
+
+	@Benchmark
+	public String accessorGet() {
+		return this.accessor.get(this.entity);
+	}
+
+	@Benchmark
+	public void directSet() {
+		this.entity.state = this.next;
+	}
+
+	@Benchmark
+	public void reflectionSet() throws IllegalAccessException {
+		this.field.set(this.entity, this.next);
+	}
+
+	@Benchmark
+	public void accessorSet() {
+		this.accessor.set(this.entity, this.next);
+	}
+}
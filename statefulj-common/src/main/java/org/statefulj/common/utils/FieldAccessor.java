@@ -0,0 +1,120 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.common.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a single Field through MethodHandles.  The handles are resolved, and the Field's
+ * access checked, once when the accessor is built rather than on every {@link Field#get(Object)}
+ * and {@link Field#set(Object, Object)}.  Build one accessor per Field and hold on to it.
+ *
+ * The handles are held in instance fields, so the JIT doesn't constant fold them as it would a
+ * static final handle; the cost relative to reflection and plain field access is measured by
+ * FieldAccessorBenchmark in statefulj-benchmarks.
+ *
+ * @param <V> the type of the Field's value
+ */
+public final class FieldAccessor<V> {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private final Field field;
+	private final MethodHandle getter;
+	private final MethodHandle setter;
+
+	private FieldAccessor(Field field, MethodHandle getter, MethodHandle setter) {
+		this.field = field;
+		this.getter = getter;
+		this.setter = setter;
+	}
+
+	/**
+	 * Build an accessor for the Field.  The accessor makes a copy of the Field accessible, so the Field
+	 * itself, which may be shared, isn't modified
+	 *
+	 * @param field the Field to access
+	 * @return the FieldAccessor
+	 */
+	public static <V> FieldAccessor<V> of(Field field) {
+		field = ReflectionUtils.copy(field);
+		field.setAccessible(true);
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle getter;
+		try {
+			getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("Unable to access field, field=" + field, e);
+		}
+
+		// A final field can be read but not necessarily written
+		//
+		MethodHandle setter;
+		try {
+			setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+		} catch (IllegalAccessException e) {
+			setter = null;
+		}
+		return new FieldAccessor<V>(field, getter, setter);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(Object obj) {
+		try {
+			return (V)this.getter.invokeExact(obj);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	public void set(Object obj, V value) {
+		if (this.setter == null) {
+			throw new RuntimeException("Field is not writable, field=" + this.field);
+		}
+		try {
+			this.setter.invokeExact(obj, (Object)value);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	public Field getField() {
+		return this.field;
+	}
+
+	public String getName() {
+		return this.field.getName();
+	}
+
+	@Override
+	public String toString() {
+		return "FieldAccessor[" + this.field + "]";
+	}
+}
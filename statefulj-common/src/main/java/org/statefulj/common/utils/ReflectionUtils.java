@@ -28,10 +28,78 @@ import java.util.regex.Pattern;
 public class ReflectionUtils {
 	
 	private static Pattern fieldNamePattern = Pattern.compile("[g|s]et(.)(.*)");
-	
+
+	/**
+	 * Cache of annotation lookups.  The outer ClassValue is keyed by the annotation Class, and the
+	 * inner by the Class searched, so neither Class is held by the cache of the other: the cache
+	 * never prevents either Class, or its ClassLoader, from being unloaded.  A lookup which found
+	 * nothing is cached as null
+	 */
+	private static abstract class AnnotationCache extends ClassValue<ClassValue<Object>> {
+
+		@Override
+		protected ClassValue<Object> computeValue(final Class<?> annotationClass) {
+			return new ClassValue<Object>() {
+
+				@Override
+				protected Object computeValue(Class<?> clazz) {
+					return find(clazz, annotationClass.asSubclass(Annotation.class));
+				}
+			};
+		}
+
+		Object get(Class<?> clazz, Class<? extends Annotation> annotationClass) {
+			return this.get(annotationClass).get(clazz);
+		}
+
+		protected abstract Object find(Class<?> clazz, Class<? extends Annotation> annotationClass);
+	}
+
+	private static final AnnotationCache annotatedFields = new AnnotationCache() {
+
+		@Override
+		protected Object find(Class<?> clazz, Class<? extends Annotation> annotationClass) {
+			return findFirstAnnotatedField(clazz, annotationClass);
+		}
+	};
+
+	private static final AnnotationCache annotatedMethods = new AnnotationCache() {
+
+		@Override
+		protected Object find(Class<?> clazz, Class<? extends Annotation> annotationClass) {
+			return findFirstAnnotatedMethod(clazz, annotationClass);
+		}
+	};
+
+	private static final AnnotationCache referencedFields = new AnnotationCache() {
+
+		@Override
+		protected Object find(Class<?> clazz, Class<? extends Annotation> annotationClass) {
+			return findReferencedField(clazz, annotationClass);
+		}
+	};
+
+	/**
+	 * Return the first Field, declared by the Class or one of its superclasses, that is annotated with annotationClass.
+	 * The result is computed once per Class and then cached, and the cached Field is returned, so it must not be
+	 * modified, for example by making it accessible; a caller which does so should first take a {@link #copy(Field)}
+	 *
+	 * @param clazz Class to search
+	 * @param annotationClass the Annotation to look for
+	 * @return the Field or null if none is annotated
+	 */
 	public static Field getFirstAnnotatedField(
 			Class<?> clazz,
-			Class<? extends Annotation> annotationClass) { 
+			Class<? extends Annotation> annotationClass) {
+		if (clazz == null) {
+			return null;
+		}
+		return (Field)annotatedFields.get(clazz, annotationClass);
+	}
+
+	private static Field findFirstAnnotatedField(
+			Class<?> clazz,
+			Class<? extends Annotation> annotationClass) {
 		Field match = null;
 		if (clazz != null) {
 			for(Field field : clazz.getDeclaredFields()) {
@@ -64,9 +132,27 @@ public class ReflectionUtils {
 		return fields;
 	}
 	
+	/**
+	 * Return the first Method, declared by the Class or one of its superclasses, that is annotated with annotationClass.
+	 * The result is computed once per Class and then cached, and the cached Method is returned, so it must not be
+	 * modified, for example by making it accessible; a caller which does so should first take a {@link #copy(Method)}
+	 *
+	 * @param clazz Class to search
+	 * @param annotationClass the Annotation to look for
+	 * @return the Method or null if none is annotated
+	 */
 	public static Method getFirstAnnotatedMethod(
 			Class<?> clazz,
 			Class<? extends Annotation> annotationClass) {
+		if (clazz == null) {
+			return null;
+		}
+		return (Method)annotatedMethods.get(clazz, annotationClass);
+	}
+
+	private static Method findFirstAnnotatedMethod(
+			Class<?> clazz,
+			Class<? extends Annotation> annotationClass) {
 		Method match = null;
 		if (clazz != null) {
 			for(Method method : clazz.getDeclaredMethods()) {
@@ -152,9 +238,27 @@ public class ReflectionUtils {
 		return (matcher.matches()) ? matcher.group(1).toLowerCase() + matcher.group(2) : null;
 	}
 		
+	/**
+	 * Return the Field annotated with annotationClass, or the Field behind an annotated getter or setter.
+	 * The result is computed once per Class and then cached, and the cached Field is returned, so it must not be
+	 * modified, for example by making it accessible; a caller which does so should first take a {@link #copy(Field)}
+	 *
+	 * @param clazz Class to search
+	 * @param annotationClass the Annotation to look for
+	 * @return the Field or null if none is referenced
+	 */
 	public static Field getReferencedField(
 			Class<?> clazz,
 			Class<? extends Annotation> annotationClass) {
+		if (clazz == null) {
+			return null;
+		}
+		return (Field)referencedFields.get(clazz, annotationClass);
+	}
+
+	private static Field findReferencedField(
+			Class<?> clazz,
+			Class<? extends Annotation> annotationClass) {
 		Field field = getFirstAnnotatedField(clazz, annotationClass);
 		if (field == null) {
 			Method method = getFirstAnnotatedMethod(clazz, annotationClass);
@@ -177,6 +281,51 @@ public class ReflectionUtils {
 		return field;
 	}
 
+	/**
+	 * Return a copy of the Field, which can be modified without affecting other holders of the Field
+	 *
+	 * @param field the Field to copy
+	 * @return the copy, or null if field is null
+	 */
+	public static Field copy(Field field) {
+		if (field == null) {
+			return null;
+		}
+		try {
+			return field.getDeclaringClass().getDeclaredField(field.getName());
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Return a copy of the Method, which can be modified without affecting other holders of the Method.
+	 * If a bridge Method shares the signature, the Method is found amongst all the declared Methods
+	 *
+	 * @param method the Method to copy
+	 * @return the copy, or null if method is null
+	 */
+	public static Method copy(Method method) {
+		if (method == null) {
+			return null;
+		}
+		Class<?> clazz = method.getDeclaringClass();
+		try {
+			Method copy = clazz.getDeclaredMethod(method.getName(), method.getParameterTypes());
+			if (copy.equals(method)) {
+				return copy;
+			}
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+		for(Method copy : clazz.getDeclaredMethods()) {
+			if (copy.equals(method)) {
+				return copy;
+			}
+		}
+		throw new RuntimeException("Unable to copy method, method=" + method);
+	}
+
     /**
      * Climb the class hierarchy starting with the clazz provided, looking for the field with fieldName
      *
@@ -0,0 +1,70 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FieldAccessorTest {
+
+	static class Base {
+
+		@SuppressWarnings("unused")
+		private Long id;
+	}
+
+	static class Foo extends Base {
+
+		@SuppressWarnings("unused")
+		private String state;
+
+		private final int count = 1;
+	}
+
+	@Test
+	public void testGetAndSet() throws Exception {
+		FieldAccessor<String> state = FieldAccessor.of(Foo.class.getDeclaredField("state"));
+		Foo foo = new Foo();
+		assertNull(state.get(foo));
+		state.set(foo, "stateA");
+		assertEquals("stateA", state.get(foo));
+		assertEquals("state", state.getName());
+	}
+
+	@Test
+	public void testInheritedField() throws Exception {
+		FieldAccessor<Object> id = FieldAccessor.of(ReflectionUtils.getField(Foo.class, "id"));
+		Foo foo = new Foo();
+		id.set(foo, 42L);
+		assertEquals(42L, id.get(foo));
+	}
+
+	@Test
+	public void testPrimitiveField() throws Exception {
+		FieldAccessor<Object> count = FieldAccessor.of(Foo.class.getDeclaredField("count"));
+		assertEquals(1, count.get(new Foo()));
+	}
+
+	@Test(expected=ClassCastException.class)
+	public void testWrongOwner() throws Exception {
+		FieldAccessor<String> state = FieldAccessor.of(Foo.class.getDeclaredField("state"));
+		state.get(new Base());
+	}
+}
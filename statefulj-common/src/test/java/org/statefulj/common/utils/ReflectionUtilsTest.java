@@ -59,4 +59,43 @@ public class ReflectionUtilsTest {
 		assertNotNull(foo);
 		assertEquals("foo", foo.getName());
 	}
+
+	static class Annotated {
+
+		@Bar
+		String bar;
+	}
+
+	static class Unannotated {
+
+		String bar;
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testLookupsReturnCachedFields() {
+		Field first = ReflectionUtils.getFirstAnnotatedField(Annotated.class, Bar.class);
+		assertNotNull(first);
+		assertSame(first, ReflectionUtils.getFirstAnnotatedField(Annotated.class, Bar.class));
+		assertSame(first, ReflectionUtils.getReferencedField(Annotated.class, Bar.class));
+
+		// A caller which makes the Field accessible works on its own copy
+		//
+		Field copy = ReflectionUtils.copy(first);
+		copy.setAccessible(true);
+		assertEquals(first, copy);
+		assertNotSame(first, copy);
+		assertFalse(first.isAccessible());
+		assertNotSame(first, FieldAccessor.of(first).getField());
+		assertFalse(first.isAccessible());
+	}
+
+	@Test
+	public void testMissingLookupIsNull() {
+		assertNull(ReflectionUtils.getFirstAnnotatedField(Unannotated.class, Bar.class));
+		assertNull(ReflectionUtils.getFirstAnnotatedField(Unannotated.class, Bar.class));
+		assertNull(ReflectionUtils.getFirstAnnotatedMethod(Unannotated.class, Bar.class));
+		assertNull(ReflectionUtils.getReferencedField(Unannotated.class, Bar.class));
+		assertNull(ReflectionUtils.getReferencedField(null, Bar.class));
+	}
 }
@@ -94,6 +94,7 @@ public class CamelBinder implements EndpointBinder {
 			}
 			if (idField != null) {
 				try {
+					idField = ReflectionUtils.copy(idField);
 					idField.setAccessible(true);
 					id = idField.get(msg);
 				} catch (IllegalArgumentException e) {
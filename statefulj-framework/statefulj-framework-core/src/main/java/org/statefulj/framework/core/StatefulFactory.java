@@ -17,6 +17,7 @@
  */
 package org.statefulj.framework.core;
 
+import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -44,6 +45,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.annotation.QualifierAnnotationAutowireCandidateResolver;
@@ -52,6 +54,7 @@ import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.config.DependencyDescriptor;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
@@ -63,6 +66,7 @@ import org.springframework.core.MethodParameter;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
 import org.statefulj.common.utils.ReflectionUtils;
+import org.statefulj.framework.core.actions.ActionGenerator;
 import org.statefulj.framework.core.actions.DomainEntityMethodInvocationAction;
 import org.statefulj.framework.core.actions.MethodInvocationAction;
 import org.statefulj.framework.core.annotations.StatefulController;
@@ -74,6 +78,7 @@ import org.statefulj.framework.core.model.EndpointBinder;
 import org.statefulj.framework.core.model.PersistenceSupportBeanFactory;
 import org.statefulj.framework.core.model.ReferenceFactory;
 import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.framework.core.model.impl.DispatchingFSMHarnessImpl;
 import org.statefulj.framework.core.model.impl.MemoryPersistenceSupportBeanFactoryImpl;
 import org.statefulj.framework.core.model.impl.ReferenceFactoryImpl;
 import org.statefulj.framework.core.model.impl.StatefulFSMImpl;
@@ -101,6 +106,8 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 
 	private MemoryPersistenceSupportBeanFactoryImpl memoryPersistenceFactory = new MemoryPersistenceSupportBeanFactoryImpl();
 
+	private ActionGenerator actionGenerator = new ActionGenerator();
+
 	private String[] packages;
 
 	/**
@@ -568,6 +575,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 						entry.getKey(),
 						entry.getValue(),
 						isDomainEntity,
+						scAnnotation.generateActions(),
 						controllerRef,
 						transitionId,
 						reg);
@@ -587,6 +595,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 					entry.getKey(),
 					entry.getValue(),
 					isDomainEntity,
+					scAnnotation.generateActions(),
 					controllerRef,
 					transitionId,
 					reg);
@@ -618,6 +627,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 		String persisterId = registerPersisterBean(
 				referenceFactory,
 				factory,
+				statefulControllerBeanId,
 				scAnnotation,
 				managedClass,
 				repoBeanId,
@@ -644,6 +654,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 				managedClass,
 				fsmBeanId,
 				factoryId,
+				stateBeans,
 				transitionIds,
 				reg);
 
@@ -653,6 +664,8 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			registerFSMHarness(
 					referenceFactory,
 					factory,
+					statefulControllerBeanId,
+					scAnnotation,
 					managedClass,
 					statefulFSMBeanId,
 					factoryId,
@@ -809,9 +822,10 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			Transition transition,
 			Method method,
 			boolean isDomainEntity,
+			boolean generateActions,
 			RuntimeBeanReference controllerRef,
 			String transitionId,
-			BeanDefinitionRegistry reg) {
+			BeanDefinitionRegistry reg) throws CannotCompileException, NotFoundException {
 
 		// Remap to="Any" to to=from
 		//
@@ -831,7 +845,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			String actionId = referenceFactory.getActionId(method);
 			if (!reg.isBeanNameInUse(actionId)) {
 				registerMethodInvocationAction(referenceFactory, method,
-						isDomainEntity, controllerRef, reg, actionId);
+						isDomainEntity, generateActions, controllerRef, reg, actionId);
 			}
 			actionRef = new RuntimeBeanReference(actionId);
 		}
@@ -880,20 +894,30 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 	 * @param referenceFactory
 	 * @param method
 	 * @param isDomainEntity
+	 * @param generateActions
 	 * @param controllerRef
 	 * @param reg
 	 * @param actionId
+	 * @throws CannotCompileException
+	 * @throws NotFoundException
 	 */
 	private void registerMethodInvocationAction(
 			ReferenceFactory referenceFactory, Method method,
-			boolean isDomainEntity, RuntimeBeanReference controllerRef,
-			BeanDefinitionRegistry reg, String actionId) {
+			boolean isDomainEntity, boolean generateActions,
+			RuntimeBeanReference controllerRef,
+			BeanDefinitionRegistry reg, String actionId) throws CannotCompileException, NotFoundException {
 		// Choose the type of invocationAction based off of
-		// whether the controller is a DomainEntity
+		// whether the controller is a DomainEntity, and whether
+		// we can generate a direct invocation of the method
 		//
-		Class<?> methodInvocationAction = (isDomainEntity) ?
-				DomainEntityMethodInvocationAction.class :
-				MethodInvocationAction.class;
+		Class<?> methodInvocationAction = null;
+		if (generateActions && this.actionGenerator.isGeneratable(method)) {
+			methodInvocationAction = this.actionGenerator.generate(method, isDomainEntity);
+		} else {
+			methodInvocationAction = (isDomainEntity) ?
+					DomainEntityMethodInvocationAction.class :
+					MethodInvocationAction.class;
+		}
 
 		BeanDefinition actionBean = BeanDefinitionBuilder
 				.genericBeanDefinition(methodInvocationAction)
@@ -962,6 +986,14 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			args.addIndexedArgumentValue(7, new RuntimeBeanReference(finderId));
 		}
 
+		if (!StringUtils.isEmpty(scAnnotation.retryPolicyId())) {
+			fsmBean.getPropertyValues().add("retryPolicy", new RuntimeBeanReference(scAnnotation.retryPolicyId()));
+		}
+
+		if (!StringUtils.isEmpty(scAnnotation.stateNotifierId())) {
+			fsmBean.getPropertyValues().add("stateNotifier", new RuntimeBeanReference(scAnnotation.stateNotifierId()));
+		}
+
 		reg.registerBeanDefinition(fsmBeanId, fsmBean);
 		return fsmBeanId;
 	}
@@ -971,6 +1003,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			Class<?> statefulClass,
 			String fsmBeanId,
 			String factoryId,
+			List<RuntimeBeanReference> stateBeans,
 			List<String> transitionIds,
 			BeanDefinitionRegistry reg) {
 		String statefulFSMBeanId = referenceFactory.getStatefulFSMId();
@@ -981,6 +1014,7 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 		args.addIndexedArgumentValue(0, new RuntimeBeanReference(fsmBeanId));
 		args.addIndexedArgumentValue(1, statefulClass);
 		args.addIndexedArgumentValue(2, new RuntimeBeanReference(factoryId));
+		args.addIndexedArgumentValue(3, stateBeans);
 		reg.registerBeanDefinition(statefulFSMBeanId, statefulFSMBean);
 		statefulFSMBean.setDependsOn(transitionIds.toArray(new String[]{}));
 		return statefulFSMBeanId;
@@ -1048,12 +1082,13 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 	private String registerPersisterBean(
 			ReferenceFactory referenceFactory,
 			PersistenceSupportBeanFactory persistenceFactory,
+			String statefulControllerBeanId,
 			StatefulController statefulContollerAnnotation,
 			Class<?> statefulClass,
 			String repoBeanId,
 			BeanDefinition repoBeanDefinitionFactory,
 			List<RuntimeBeanReference> stateBeans,
-			BeanDefinitionRegistry reg) {
+			BeanDefinitionRegistry reg) throws ClassNotFoundException {
 
 		String persisterId = statefulContollerAnnotation.persisterId();
 
@@ -1063,15 +1098,18 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 			}
 			String startStateId = referenceFactory.getStateId(statefulContollerAnnotation.startState());
 			persisterId = referenceFactory.getPersisterId();
-			reg.registerBeanDefinition(
-					persisterId,
-					persistenceFactory.buildPersisterBean(
-							statefulClass,
-							repoBeanId,
-							repoBeanDefinitionFactory,
-							statefulContollerAnnotation.stateField(),
-							startStateId,
-							stateBeans));
+			BeanDefinition persisterBean = persistenceFactory.buildPersisterBean(
+					statefulClass,
+					repoBeanId,
+					repoBeanDefinitionFactory,
+					statefulContollerAnnotation.stateField(),
+					startStateId,
+					stateBeans);
+			if (statefulContollerAnnotation.optimistic()) {
+				validateProperty(statefulControllerBeanId, "optimistic", persisterBean, "optimistic", reg);
+				persisterBean.getPropertyValues().add("optimistic", true);
+			}
+			reg.registerBeanDefinition(persisterId, persisterBean);
 		}
 
 		return persisterId;
@@ -1080,21 +1118,66 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 	private String registerFSMHarness(
 				ReferenceFactory referenceFactory,
 				PersistenceSupportBeanFactory persistenceFactory,
+				String statefulControllerBeanId,
+				StatefulController scAnnotation,
 				Class<?> statefulClass,
 				String fsmBeanId,
 				String factoryId,
 				String finderId,
 				BeanDefinition repoBeanFactory,
-				BeanDefinitionRegistry reg) {
+				BeanDefinitionRegistry reg) throws ClassNotFoundException {
 		String fsmHarnessId = referenceFactory.getFSMHarnessId();
-		reg.registerBeanDefinition(
-				fsmHarnessId,
-				persistenceFactory.buildFSMHarnessBean(
-						statefulClass,
-						fsmBeanId,
-						factoryId,
-						finderId,
-						repoBeanFactory));
+		BeanDefinition fsmHarnessBean = persistenceFactory.buildFSMHarnessBean(
+				statefulClass,
+				fsmBeanId,
+				factoryId,
+				finderId,
+				repoBeanFactory);
+
+		// Group commit is implemented by the FSMHarness of the persistence support
+		//
+		if (scAnnotation.groupCommitSize() > 1) {
+			validateProperty(statefulControllerBeanId, "groupCommitSize", fsmHarnessBean, "groupCommitSize", reg);
+			fsmHarnessBean.getPropertyValues().add("groupCommitSize", scAnnotation.groupCommitSize());
+			fsmHarnessBean.getPropertyValues().add("groupCommitWindow", scAnnotation.groupCommitWindow());
+		}
+
+		// In optimistic mode, a conflict is only detected as the FSMHarness flushes the Event, so the
+		// FSMHarness retries the Event
+		//
+		if (scAnnotation.optimistic()) {
+			validateProperty(statefulControllerBeanId, "optimistic", fsmHarnessBean, "optimistic", reg);
+			fsmHarnessBean.getPropertyValues().add("optimistic", true);
+			fsmHarnessBean.getPropertyValues().add("retryAttempts", scAnnotation.retryAttempts());
+			fsmHarnessBean.getPropertyValues().add("retryInterval", scAnnotation.retryInterval());
+		}
+
+		// If there is an EventDispatcher, then the Binders invoke the FSMHarness through the
+		// EventDispatcher
+		//
+		if (!StringUtils.isEmpty(scAnnotation.eventDispatcherId())) {
+			String dispatchedFSMHarnessId = referenceFactory.getDispatchedFSMHarnessId();
+			reg.registerBeanDefinition(dispatchedFSMHarnessId, fsmHarnessBean);
+
+			fsmHarnessBean = BeanDefinitionBuilder
+					.genericBeanDefinition(DispatchingFSMHarnessImpl.class)
+					.getBeanDefinition();
+			ConstructorArgumentValues args = fsmHarnessBean.getConstructorArgumentValues();
+			args.addIndexedArgumentValue(0, new RuntimeBeanReference(dispatchedFSMHarnessId));
+			args.addIndexedArgumentValue(1, new RuntimeBeanReference(scAnnotation.eventDispatcherId()));
+
+			// The EventDispatcher may be shared by several FSMHarnesses, so it's closed by its own bean
+			//
+			if (reg.containsBeanDefinition(scAnnotation.eventDispatcherId())) {
+				BeanDefinition eventDispatcherBean = reg.getBeanDefinition(scAnnotation.eventDispatcherId());
+				if (eventDispatcherBean instanceof AbstractBeanDefinition
+						&& ((AbstractBeanDefinition)eventDispatcherBean).getDestroyMethodName() == null) {
+					((AbstractBeanDefinition)eventDispatcherBean).setDestroyMethodName("close");
+				}
+			}
+		}
+
+		reg.registerBeanDefinition(fsmHarnessId, fsmHarnessBean);
 		return fsmHarnessId;
 	}
 
@@ -1118,6 +1201,28 @@ public class StatefulFactory implements BeanDefinitionRegistryPostProcessor, App
 		return null;
 	}
 
+	/**
+	 * Persistence specific attributes of the StatefulController are set as properties of the beans
+	 * built by the PersistenceSupportBeanFactory, so fail if the bean doesn't support the attribute
+	 */
+	private void validateProperty(
+			String statefulControllerBeanId,
+			String attribute,
+			BeanDefinition bf,
+			String property,
+			BeanDefinitionRegistry reg) throws ClassNotFoundException {
+		Class<?> clazz = getClassFromBeanDefinition(bf, reg);
+		if (clazz == null) {
+			return;
+		}
+		PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(clazz, property);
+		if (descriptor == null || descriptor.getWriteMethod() == null) {
+			throw new RuntimeException(
+					"StatefulController " + statefulControllerBeanId + ": " + attribute +
+					" isn't supported by its persistence, " + clazz.getName());
+		}
+	}
+
 	private Class<?> getClassFromBeanDefinition(BeanDefinition bf, BeanDefinitionRegistry reg) throws ClassNotFoundException {
 		Class<?> clazz = null;
 
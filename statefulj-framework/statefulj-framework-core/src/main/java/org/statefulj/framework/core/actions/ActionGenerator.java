@@ -0,0 +1,193 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.actions;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.CannotCompileException;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.NotFoundException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statefulj.fsm.RetryException;
+
+/**
+ * Generates a subclass of {@link MethodInvocationAction}, or {@link DomainEntityMethodInvocationAction},
+ * that invokes the Action method directly rather than through a MethodHandle.  The generated invocation
+ * is a plain virtual call on the Controller Class which the JIT can inline into the transition
+ *
+ * @author Andrew Hall
+ *
+ */
+public class ActionGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(ActionGenerator.class);
+
+	private static final String SUFFIX = "$$Action";
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	/**
+	 * Only public methods of public Classes can be invoked from a generated Class
+	 *
+	 * @param method the Action method
+	 * @return true if a direct invocation can be generated for the method
+	 */
+	public boolean isGeneratable(Method method) {
+		Class<?> clazz = method.getDeclaringClass();
+		return Modifier.isPublic(method.getModifiers())
+				&& !Modifier.isStatic(method.getModifiers())
+				&& Modifier.isPublic(clazz.getModifiers())
+				&& (clazz.getEnclosingClass() == null || Modifier.isStatic(clazz.getModifiers()));
+	}
+
+	/**
+	 * Generate the Action Class for the method
+	 *
+	 * @param method the Action method
+	 * @param isDomainEntity whether the method is invoked on the Stateful Entity rather than the Controller
+	 * @return the generated Action Class
+	 * @throws CannotCompileException
+	 * @throws NotFoundException
+	 */
+	public Class<?> generate(Method method, boolean isDomainEntity) throws CannotCompileException, NotFoundException {
+		Class<?> superClass = (isDomainEntity) ?
+				DomainEntityMethodInvocationAction.class :
+				MethodInvocationAction.class;
+		Class<?> targetClass = method.getDeclaringClass();
+
+		logger.debug("Generating Action for {}.{}", targetClass.getName(), method.getName());
+
+		// Set up the ClassPool
+		//
+		ClassPool cp = ClassPool.getDefault();
+		cp.appendClassPath(new ClassClassPath(getClass()));
+		cp.appendClassPath(new ClassClassPath(targetClass));
+
+		CtClass superCtClass = cp.get(superClass.getName());
+		CtClass actionClass = cp.makeClass(
+				targetClass.getName() + SUFFIX + counter.incrementAndGet(),
+				superCtClass);
+
+		// Pass the constructor arguments through to the super class
+		//
+		for (CtConstructor superCtor : superCtClass.getDeclaredConstructors()) {
+			actionClass.addConstructor(
+					CtNewConstructor.make(
+							superCtor.getParameterTypes(),
+							superCtor.getExceptionTypes(),
+							"{ super($$); }",
+							actionClass));
+		}
+
+		// Override invoke with a direct call, falling back to the MethodHandle if the target isn't an
+		// instance of the Controller Class, such as an interface based proxy
+		//
+		String target = (isDomainEntity) ? "$1" : "getController()";
+		String targetType = typeName(targetClass);
+		String call = "((" + targetType + ")" + target + ")." + method.getName() + "(" + buildArguments(method) + ")";
+		String invocation = (method.getReturnType() == void.class) ?
+				call + "; return null;" :
+				"return ($w)" + call + ";";
+		String body = "{ "
+				+ "if (!(" + target + " instanceof " + targetType + ")) { return super.invoke($1, $2, $3); } "
+				+ invocation
+				+ " }";
+
+		CtMethod invoke = CtNewMethod.make(
+				cp.get(Object.class.getName()),
+				"invoke",
+				new CtClass[] {
+					cp.get(Object.class.getName()),
+					cp.get(String.class.getName()),
+					cp.get(Object.class.getName() + "[]")
+				},
+				new CtClass[] { cp.get(RetryException.class.getName()) },
+				body,
+				actionClass);
+		invoke.setModifiers(Modifier.PROTECTED);
+
+		// Keep the exception handling of MethodInvocationAction: unchecked exceptions and RetryExceptions
+		// propagate as-is, checked exceptions are wrapped
+		//
+		String retryException = RetryException.class.getName();
+		invoke.addCatch(
+				"{ "
+				+ "if ($e instanceof RuntimeException) { throw (RuntimeException)$e; } "
+				+ "if ($e instanceof " + retryException + ") { throw (" + retryException + ")$e; } "
+				+ "throw new RuntimeException($e); "
+				+ "}",
+				cp.get(Exception.class.getName()));
+		actionClass.addMethod(invoke);
+
+		return actionClass.toClass(targetClass.getClassLoader(), targetClass.getProtectionDomain());
+	}
+
+	private String buildArguments(Method method) {
+		StringBuilder args = new StringBuilder();
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				args.append(", ");
+			}
+			args.append(cast(types[i], "$3[" + i + "]"));
+		}
+		return args.toString();
+	}
+
+	private String cast(Class<?> type, String value) {
+		if (!type.isPrimitive()) {
+			return "(" + typeName(type) + ")" + value;
+		}
+		String wrapper = typeName(wrap(type));
+		return "((" + wrapper + ")" + value + ")." + type.getName() + "Value()";
+	}
+
+	private String typeName(Class<?> type) {
+		return (type.isArray()) ? typeName(type.getComponentType()) + "[]" : type.getName();
+	}
+
+	private Class<?> wrap(Class<?> type) {
+		if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == byte.class) {
+			return Byte.class;
+		} else if (type == char.class) {
+			return Character.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == int.class) {
+			return Integer.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == float.class) {
+			return Float.class;
+		} else {
+			return Double.class;
+		}
+	}
+}
@@ -17,21 +17,28 @@
  */
 package org.statefulj.framework.core.actions;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.invoke.MethodHandle;
 
 import org.statefulj.fsm.FSM;
 import org.statefulj.fsm.RetryException;
 
 /**
- * DomainEntityMethodInvocationAction is responsible for invoking an Action method on a Domain Entity
+ * DomainEntityMethodInvocationAction is responsible for invoking an Action method on a Domain Entity.
+ * The method is resolved once per Domain Entity Class
  * 
  * @author Andrew Hall
  *
  */
 public class DomainEntityMethodInvocationAction extends MethodInvocationAction {
 
+	private final ClassValue<MethodHandle> handles = new ClassValue<MethodHandle>() {
+
+		@Override
+		protected MethodHandle computeValue(Class<?> type) {
+			return resolve(type);
+		}
+	};
+
 	public DomainEntityMethodInvocationAction(
 			String method,
 			Class<?>[] parameters,
@@ -40,20 +47,21 @@ public class DomainEntityMethodInvocationAction extends MethodInvocationAction {
 	}
 	
 	@Override
-	protected Object invoke(Object stateful, String event, List<Object> invokeParmList) throws RetryException, SecurityException, IllegalArgumentException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-		return invoke(stateful, invokeParmList);
+	protected Object invoke(Object stateful, String event, Object[] methodParms) throws RetryException {
+		return invoke(this.handles.get(stateful.getClass()), stateful, methodParms);
 	}
 	
 	@Override
-	protected List<Object> buildInvokeParameters(Object stateful, String event, List<Object> parmList) {
+	protected Object[] buildInvokeParameters(Object stateful, String event, Object[] parms, int offset) {
 
-		// Add the Entity and Event to the parm list to pass to the Controller
-		// TODO : Inspect method signature - make entity and event optional
+		// Add the Event to the parm list to pass to the Domain Entity
+		// TODO : Inspect method signature - make event optional
 		//
-		ArrayList<Object> invokeParmList = new ArrayList<Object>(parmList.size() + 1);
-		invokeParmList.add(event);
-		invokeParmList.addAll(parmList);
-		
-		return invokeParmList;
+		Object[] methodParms = allocate(parms, offset, 1);
+		if (methodParms.length > 0) {
+			methodParms[0] = event;
+		}
+		copyParms(parms, offset, methodParms, 1);
+		return methodParms;
 	}
 }
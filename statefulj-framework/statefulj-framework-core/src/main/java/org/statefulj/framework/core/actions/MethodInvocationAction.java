@@ -17,17 +17,12 @@
  */
 package org.statefulj.framework.core.actions;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.mutable.MutableObject;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.util.ReflectionUtils;
 import org.statefulj.framework.core.fsm.ContextWrapper;
 import org.statefulj.fsm.FSM;
@@ -37,14 +32,15 @@ import org.statefulj.fsm.model.Action;
 
 /**
  * The MethodInvocationAction is responsible for invoking an Action method on a 
- * {@link org.statefulj.framework.core.annotations.StatefulController}
+ * {@link org.statefulj.framework.core.annotations.StatefulController}.  The method is resolved
+ * once, when the Action is built, into a MethodHandle taking the target and an array of parameters
  * 
  * @author Andrew Hall
  *
  */
 public class MethodInvocationAction implements Action<Object> {
 
-	private final Pattern protocol = Pattern.compile("(([^:]*):)?(.*)");
+	private static final String EVENT_PREFIX = "event:";
 
 	private Object controller;
 	
@@ -53,6 +49,8 @@ public class MethodInvocationAction implements Action<Object> {
 	private Class<?>[] parameters;
 
 	private FSM<Object> fsm;
+
+	private MethodHandle handle;
 	
 	public MethodInvocationAction(
 			String method,
@@ -63,70 +61,41 @@ public class MethodInvocationAction implements Action<Object> {
 		this.parameters = parameters;
 		this.fsm = fsm;	
 		this.controller = controller;
+		if (controller != null) {
+			this.handle = resolve(controller.getClass());
+		}
 	}
 
 	@SuppressWarnings("unchecked")
 	public void execute(Object stateful, String event, Object... parms) throws RetryException {
-		try {
-			
-			// Parse out incoming parms to pass into the method
-			//
-			List<Object> parmList = new ArrayList<Object>(Arrays.asList(parms));
-
-			// Remove the first Object in the parm list - it's our Return Value
-			//
-			MutableObject<Object> returnValue = (MutableObject<Object>)parmList.remove(0);
-
-			// If there is a retry parameter object, pop it off 
-			//
-			popOffRetryParms(parmList);
-			
-			// Now build the list of parameters to pass into the method
-			//
-			List<Object> invokeParmList = buildInvokeParameters(stateful, event, parmList);
-			
-			if (invokeParmList.size() < this.parameters.length) {
-				throw new RuntimeException(
-						"Incoming parameter list is incorrect, expected " 
-						+ this.parameters.length 
-						+ " parameters, but have " 
-						+ invokeParmList.size());
-			}
-			
-			// Call the method on the Controller
-			//
-			Object retVal = invoke(stateful, event, invokeParmList);
-			
-			// If the return value is a String prefixed with "event:", then it's an event 
-			// so forward the event to the FSM.  Else, return the value as-is
-			//
-			if (retVal instanceof String) {
-				Pair<String, String> pair = this.parseResponse((String)retVal);
-				if ("event".equals(pair.getLeft())) {
-					this.fsm.onEvent(stateful, pair.getRight(), parms);
-				} else {
-					returnValue.setValue(retVal);
-				}
-			} else {
-				returnValue.setValue(retVal);
-			}
-		} catch (NoSuchMethodException e) {
-			throw new RuntimeException(e);
-		} catch (SecurityException e) {
-			throw new RuntimeException(e);
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (IllegalArgumentException e) {
-			throw new RuntimeException(e);
-		} catch (InvocationTargetException e) {
-			if (e.getCause() instanceof RuntimeException) {
-				throw (RuntimeException)e.getCause();
-			}
-			if (e.getCause() instanceof RetryException) {
-				throw (RetryException)e.getCause();
+
+		// The first Object in the parm list is our Return Value
+		//
+		MutableObject<Object> returnValue = (MutableObject<Object>)parms[0];
+
+		// If there is a retry parameter object, skip over it
+		//
+		int offset = (parms.length > 1 && parms[1] instanceof ContextWrapper<?>) ? 2 : 1;
+
+		// Now build the parameters to pass into the method
+		//
+		Object[] methodParms = buildInvokeParameters(stateful, event, parms, offset);
+
+		// Call the method on the Controller
+		//
+		Object retVal = invoke(stateful, event, methodParms);
+
+		// If the return value is a String prefixed with "event:", then it's an event 
+		// so forward the event to the FSM.  Else, return the value as-is
+		//
+		if (retVal instanceof String && ((String)retVal).startsWith(EVENT_PREFIX)) {
+			try {
+				this.fsm.onEvent(stateful, ((String)retVal).substring(EVENT_PREFIX.length()), parms);
+			} catch (TooBusyException e) {
+				throw new RuntimeException(e);
 			}
-		} catch (TooBusyException e) {
-			throw new RuntimeException(e);
+		} else {
+			returnValue.setValue(retVal);
 		}
 	}
 
@@ -134,49 +103,91 @@ public class MethodInvocationAction implements Action<Object> {
 	public String toString() {
 		return this.method;
 	}
+
+	protected Object getController() {
+		return this.controller;
+	}
 	
-	protected Object invoke(Object stateful, String event, List<Object> invokeParmList) throws RetryException, SecurityException, IllegalArgumentException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-		return invoke(this.controller, invokeParmList);
+	protected Object invoke(Object stateful, String event, Object[] methodParms) throws RetryException {
+		return invoke(this.handle, this.controller, methodParms);
 	}
 	
-	protected Object invoke(Object context, List<Object> invokeParmList) throws SecurityException, NoSuchMethodException, IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = ReflectionUtils.findMethod(context.getClass(), this.method, this.parameters);
+	protected Object invoke(MethodHandle handle, Object context, Object[] methodParms) throws RetryException {
+		try {
+			return handle.invokeExact(context, methodParms);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (RetryException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	/**
+	 * Resolve the Action method on the Class and adapt it to take the target and an array of parameters
+	 *
+	 * @param clazz the Class declaring or inheriting the method
+	 * @return the MethodHandle
+	 */
+	protected MethodHandle resolve(Class<?> clazz) {
+		Method method = ReflectionUtils.findMethod(clazz, this.method, this.parameters);
 		if (method == null) {
-			throw new NoSuchMethodException(this.method);
+			throw new RuntimeException(new NoSuchMethodException(clazz.getName() + "." + this.method));
 		}
-		Object[] methodParms = invokeParmList.subList(0, this.parameters.length).toArray();
 		method.setAccessible(true);
-		return method.invoke(context, methodParms);
+		try {
+			return MethodHandles.lookup()
+					.unreflect(method)
+					.asType(MethodType.genericMethodType(this.parameters.length + 1))
+					.asSpreader(Object[].class, this.parameters.length);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
 	}
-	
-	protected List<Object> buildInvokeParameters(Object stateful, String event, List<Object> parmList) {
 
-		// Add the Entity and Event to the parm list to pass to the Controller
+	/**
+	 * Build the parameters to pass to the Controller: the Entity, the Event, then the incoming parms
+	 * starting at offset
+	 */
+	protected Object[] buildInvokeParameters(Object stateful, String event, Object[] parms, int offset) {
+
 		// TODO : Inspect method signature - make entity and event optional
 		//
-		ArrayList<Object> invokeParmList = new ArrayList<Object>(parmList.size() + 2);
-		invokeParmList.add(stateful);
-		invokeParmList.add(event);
-		invokeParmList.addAll(parmList);
-		
-		return invokeParmList;
-	}
-	
-	private Pair<String, String> parseResponse(String response) {
-		Matcher matcher = this.protocol.matcher(response);
-		if (!matcher.matches()) {
-			throw new RuntimeException("Unable to parse response=" + response);
+		Object[] methodParms = allocate(parms, offset, 2);
+		if (methodParms.length > 0) {
+			methodParms[0] = stateful;
 		}
-		return new ImmutablePair<String, String>(matcher.group(2), matcher.group(3));
+		if (methodParms.length > 1) {
+			methodParms[1] = event;
+		}
+		copyParms(parms, offset, methodParms, 2);
+		return methodParms;
 	}
 
 	/**
-	 * @param parmList
+	 * Allocate the parameter array for the method, ensuring there are enough incoming parms to fill it
 	 */
-	private void popOffRetryParms(List<Object> parmList) {
-		if (parmList.size() > 0 && (parmList.get(0) instanceof ContextWrapper<?>)) {
-			parmList.remove(0);			
+	protected Object[] allocate(Object[] parms, int offset, int leading) {
+		int available = leading + parms.length - offset;
+		if (available < this.parameters.length) {
+			throw new RuntimeException(
+					"Incoming parameter list is incorrect, expected " 
+					+ this.parameters.length 
+					+ " parameters, but have " 
+					+ available);
 		}
+		return new Object[this.parameters.length];
 	}
 
+	/**
+	 * Copy incoming parms, starting at offset, into the remaining slots of the parameter array
+	 */
+	protected void copyParms(Object[] parms, int offset, Object[] methodParms, int start) {
+		if (start < methodParms.length) {
+			System.arraycopy(parms, offset, methodParms, start, methodParms.length - start);
+		}
+	}
 }
@@ -129,5 +129,73 @@ public @interface StatefulController {
 	 * @return retry interval in milliseconds
 	 */
 	int retryInterval() default 250;
+
+	/**
+	 * The bean Id of the RetryPolicy for this FSM.
+	 * The RetryPolicy decides the wait between retry attempts and must implement the {@link org.statefulj.fsm.RetryPolicy} Interface.
+	 * If not specified, the FSM will wait retryInterval between attempts.  A RetryPolicy with state, such as a
+	 * {@link org.statefulj.fsm.retry.RetryBudgetPolicy}, should be a prototype bean so that each FSM has its own
+	 *
+	 * @return Id of the RetryPolicy Bean
+	 */
+	String retryPolicyId() default "";
+
+	/**
+	 * The bean Id of the EventDispatcher for this Entity.
+	 * The EventDispatcher must be an {@link org.statefulj.fsm.EventDispatcher}.  If specified, Events received by the
+	 * endpoint Binders are processed serially per Entity on the lanes of the EventDispatcher, rather than
+	 * concurrently on the calling threads.  The EventDispatcher may be shared by several StatefulControllers,
+	 * and is closed with its own bean as the application context closes
+	 *
+	 * @return Id of the EventDispatcher Bean
+	 */
+	String eventDispatcherId() default "";
+
+	/**
+	 * The bean Id of the StateNotifier for this FSM.
+	 * The StateNotifier must implement the {@link org.statefulj.fsm.StateNotifier} Interface.  If specified,
+	 * Events blocked by a blocking State wait to be notified of a transition out of the State rather than
+	 * re-writing the State every retryInterval
+	 *
+	 * @return Id of the StateNotifier Bean
+	 */
+	String stateNotifierId() default "";
+
+	/**
+	 * If true, a Class is generated at startup for each public Action method which invokes the method directly,
+	 * rather than through a MethodHandle.  Action methods which aren't public, or are declared by a Class
+	 * which isn't public, are always invoked through a MethodHandle
+	 *
+	 * @return whether to generate the Actions
+	 */
+	boolean generateActions() default false;
+
+	/**
+	 * The maximum number of Events applied within one shared transaction.  If greater than 1, Events received
+	 * by the endpoint Binders are queued and applied in groups, each Event within its own savepoint, so that
+	 * the cost of a commit is shared by the group.  Only supported by JPA persistence
+	 *
+	 * @return maximum number of Events per transaction
+	 */
+	int groupCommitSize() default 1;
+
+	/**
+	 * How long, in milliseconds, the first Event of a group waits for further Events before the group is applied
+	 *
+	 * @return group commit window in milliseconds
+	 */
+	int groupCommitWindow() default 5;
+
+	/**
+	 * If true, the State of the Entity is qualified by its Version rather than by a qualified update.  The
+	 * State is written along with the changes of the Action, and an Event received by the endpoint Binders
+	 * which conflicts with another transaction is applied again to the reloaded Entity, up to retryAttempts
+	 * times.  Only supported by
+	 * JPA persistence, and not with group commit.  If a persisterId is specified, that Persister must be
+	 * made optimistic as well
+	 *
+	 * @return whether State changes are qualified by the Version of the Entity
+	 */
+	boolean optimistic() default false;
 	
 }
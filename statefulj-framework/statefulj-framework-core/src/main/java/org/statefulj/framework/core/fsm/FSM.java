@@ -19,13 +19,21 @@ package org.statefulj.framework.core.fsm;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
+import org.statefulj.common.utils.FieldAccessor;
 import org.statefulj.common.utils.ReflectionUtils;
 import org.statefulj.framework.core.model.Finder;
+import org.statefulj.fsm.EventKey;
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.RetryException;
 import org.statefulj.fsm.TooBusyException;
@@ -54,6 +62,17 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 
 	private ApplicationContext appContext;
 
+	// Resolve the id accessor once per Stateful Class
+	//
+	private final ClassValue<FieldAccessor<Object>> idAccessors = new ClassValue<FieldAccessor<Object>>() {
+
+		@Override
+		protected FieldAccessor<Object> computeValue(Class<?> type) {
+			Field idField = (idType != null) ? ReflectionUtils.getReferencedField(type, idType) : null;
+			return (idField != null) ? FieldAccessor.<Object>of(idField) : null;
+		}
+	};
+
 	public FSM(
 			String name,
 			Persister<T> persister,
@@ -87,6 +106,40 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 		return super.onEvent(stateful, event, parms);
 	}
 
+	@Override
+	public State<T> onEvent(T stateful, EventKey event, Object... parms)  throws TooBusyException {
+		autowire(stateful);
+		return super.onEvent(stateful, event, parms);
+	}
+
+	@Override
+	public CompletableFuture<State<T>> onEventAsync(T stateful, String event, Object... parms) {
+		autowire(stateful);
+		return super.onEventAsync(stateful, event, parms);
+	}
+
+	@Override
+	public CompletableFuture<State<T>> onEventAsync(T stateful, EventKey event, Object... parms) {
+		autowire(stateful);
+		return super.onEventAsync(stateful, event, parms);
+	}
+
+	@Override
+	public List<EventOutcome<T>> onEvents(Collection<T> statefuls, String event, Object... parms) {
+		for (T stateful : statefuls) {
+			autowire(stateful);
+		}
+		return super.onEvents(statefuls, event, parms);
+	}
+
+	@Override
+	public List<EventOutcome<T>> onEvents(Collection<T> statefuls, EventKey event, Object... parms) {
+		for (T stateful : statefuls) {
+			autowire(stateful);
+		}
+		return super.onEvents(statefuls, event, parms);
+	}
+
 	@Override
 	protected State<T> transition(T stateful, State<T> current, String event, Transition<T> t, Object... args) throws RetryException {
 
@@ -100,9 +153,39 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 			setCurrent(stateful, current, pair.getState());
 		}
 
+		return completeTransition(stateful, current, event, transition, pair, args);
+	}
+
+	@Override
+	protected boolean[] transition(List<T> statefuls, State<T> current, Transition<T> transition, StateActionPair<T> pair) {
+
+		// As with a single Stateful Entity, an "any" transition doesn't set the current state
+		//
+		if (((TransitionImpl<T>)transition).isAny()) {
+			boolean[] updated = new boolean[statefuls.size()];
+			Arrays.fill(updated, true);
+			return updated;
+		}
+		return super.transition(statefuls, current, transition, pair);
+	}
+
+	@Override
+	protected CompletionStage<Void> transitionAsync(T stateful, State<T> current, Transition<T> transition, StateActionPair<T> pair) {
+
+		// As with a synchronous Event, an "any" transition doesn't set the current state
+		//
+		if (((TransitionImpl<T>)transition).isAny()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return super.transitionAsync(stateful, current, transition, pair);
+	}
+
+	@Override
+	protected State<T> completeTransition(T stateful, State<T> current, String event, Transition<T> transition, StateActionPair<T> pair, Object... args) throws RetryException {
+
 		// Reloading MUST happen after we successful set the current state
 		//
-		if (transition.isReload()) {
+		if (((TransitionImpl<T>)transition).isReload()) {
 			stateful = reload(stateful, event, args);
 			autowire(stateful);
 		}
@@ -194,14 +277,11 @@ public class FSM<T, CT> extends org.statefulj.fsm.FSM<T> {
 	private Object getId(T stateful) {
 		Object id = null;
 		if (this.idType != null) {
-			Field idField = ReflectionUtils.getReferencedField(stateful.getClass(), this.idType);
-			if (idField != null) {
-				idField.setAccessible(true);
+			FieldAccessor<Object> idAccessor = this.idAccessors.get(stateful.getClass());
+			if (idAccessor != null) {
 				try {
-					id = idField.get(stateful);
-				} catch (IllegalArgumentException e) {
-					logger.warn("Unable to locate id field for " + stateful);
-				} catch (IllegalAccessException e) {
+					id = idAccessor.get(stateful);
+				} catch (RuntimeException e) {
 					logger.warn("Unable to locate id field for " + stateful);
 				}
 			}
@@ -27,6 +27,10 @@ public interface ReferenceFactory {
 	
 	String getFSMHarnessId(); 
 
+	default String getDispatchedFSMHarnessId() {
+		return getFSMHarnessId() + ".dispatched";
+	}
+
 	String getPersisterId(); 
 
 	String getFactoryId();
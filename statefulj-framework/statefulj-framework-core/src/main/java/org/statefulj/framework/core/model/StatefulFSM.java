@@ -17,7 +17,12 @@
  */
 package org.statefulj.framework.core.model;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.statefulj.framework.core.annotations.FSM;
+import org.statefulj.fsm.EventKey;
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.TooBusyException;
 
 /**
@@ -56,4 +61,70 @@ public interface StatefulFSM<T> {
 	 */
 	Object onEvent(T stateful, String event, Object... parms)  throws TooBusyException ;
 
+	/**
+	 * Pass an event, identified by an {@link EventKey}, to the FSM for a non-existent Stateful Entity.
+	 * The StatefulJ framework will instiate a new Stateful Event by invoking the {@link Factory}.
+	 * By default, the event is passed by name
+	 *
+	 * @param event the EventKey obtained from {@link #getEventKey(String)}
+	 * @param parms Optional parameters passed into the Action method
+	 * @return the returned Object from the Action Method
+	 * @throws TooBusyException thrown if the FSM cannot process the event
+	 */
+	default Object onEvent(EventKey event, Object... parms)  throws TooBusyException {
+		return onEvent(event.getEvent(), parms);
+	}
+
+	/**
+	 * Pass an event, identified by an {@link EventKey}, to the FSM for existing Stateful Entity.
+	 * By default, the event is passed by name
+	 *
+	 * @param stateful the Stateful Entity
+	 * @param event the EventKey obtained from {@link #getEventKey(String)}
+	 * @param parms Optional parameters passed into the Action method
+	 * @return the returned Object from the Action Method
+	 * @throws TooBusyException thrown if the FSM cannot process the event
+	 */
+	default Object onEvent(T stateful, EventKey event, Object... parms)  throws TooBusyException {
+		return onEvent(stateful, event.getEvent(), parms);
+	}
+
+	/**
+	 * Pass an event to the FSM for each of the Stateful Entities.  Stateful Entities in the same State are
+	 * transitioned together.  The returned Objects of the Action methods are discarded.  Not supported
+	 * by default
+	 *
+	 * @param statefuls the Stateful Entities
+	 * @param event the Event
+	 * @param parms Optional parameters passed into each Action method
+	 * @return the outcome for each Stateful Entity, in iteration order
+	 */
+	default List<EventOutcome<T>> onEvents(Collection<T> statefuls, String event, Object... parms) {
+		throw new UnsupportedOperationException(getClass().getName() + " doesn't support batched events");
+	}
+
+	/**
+	 * Pass an event, identified by an {@link EventKey}, to the FSM for each of the Stateful Entities.
+	 * See {@link #onEvents(Collection, String, Object...)}.  By default, the event is passed by name
+	 *
+	 * @param statefuls the Stateful Entities
+	 * @param event the EventKey obtained from {@link #getEventKey(String)}
+	 * @param parms Optional parameters passed into each Action method
+	 * @return the outcome for each Stateful Entity, in iteration order
+	 */
+	default List<EventOutcome<T>> onEvents(Collection<T> statefuls, EventKey event, Object... parms) {
+		return onEvents(statefuls, event.getEvent(), parms);
+	}
+
+	/**
+	 * Resolve an event once so that it can be repeatedly passed to the FSM without being looked up by name.
+	 * Throws a RuntimeException if the event isn't handled by any State of the FSM.  Not supported by default
+	 *
+	 * @param event the Event
+	 * @return the EventKey
+	 */
+	default EventKey getEventKey(String event) {
+		throw new UnsupportedOperationException(getClass().getName() + " doesn't support EventKeys");
+	}
+
 }
@@ -0,0 +1,137 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.model.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.statefulj.framework.core.model.FSMHarness;
+import org.statefulj.fsm.EventDispatcher;
+import org.statefulj.fsm.TooBusyException;
+
+/**
+ * Places an {@link EventDispatcher} in front of an {@link FSMHarness}, so that Events for the same
+ * Stateful Entity are processed serially on the Entity's lane.  The calling thread waits for the
+ * Event to be processed, so callers see the same results as if they had called the FSMHarness directly.
+ * Any transaction started by the FSMHarness runs on the lane.
+ *
+ * An Event raised synchronously from within an Event that is already running on one of the lanes,
+ * such as from an Action, is a nested call: it's passed straight to the FSMHarness on the
+ * current thread, as it would be without the EventDispatcher, since waiting for it to be
+ * dispatched could wait on the current lane.  Events raised with {@link #onEventAsync} are
+ * always queued.
+ *
+ * The EventDispatcher may be shared by several FSMHarnesses, so it isn't shut down by the
+ * FSMHarness but by its own bean, as the application context closes
+ *
+ * @author Andrew Hall
+ *
+ */
+public class DispatchingFSMHarnessImpl implements FSMHarness {
+
+	private FSMHarness fsmHarness;
+
+	private EventDispatcher eventDispatcher;
+
+	public DispatchingFSMHarnessImpl(FSMHarness fsmHarness, EventDispatcher eventDispatcher) {
+		this.fsmHarness = fsmHarness;
+		this.eventDispatcher = eventDispatcher;
+	}
+
+	@Override
+	public Object onEvent(final String event, final Object id, final Object[] parms) throws TooBusyException {
+		if (this.eventDispatcher.isDispatching()) {
+			return this.fsmHarness.onEvent(event, id, parms);
+		}
+		try {
+			return await(this.onEventAsync(event, id, parms));
+		} catch(InstantiationException e) {
+
+			// The FSMHarness doesn't throw InstantiationException for an existing id
+			//
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Object onEvent(final String event, final Object[] parms) throws TooBusyException, InstantiationException {
+		if (this.eventDispatcher.isDispatching()) {
+			return this.fsmHarness.onEvent(event, parms);
+		}
+		Object id = (parms.length > 0) ? parms[0] : null;
+		CompletableFuture<Object> future = this.eventDispatcher.dispatch(id, new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				return fsmHarness.onEvent(event, parms);
+			}
+		});
+		return await(future);
+	}
+
+	/**
+	 * Dispatch the Event without waiting for it to be processed
+	 *
+	 * @param event The Event
+	 * @param id The id of the Stateful Entity, or null to create one
+	 * @param parms Parameters passed to the FSMHarness
+	 * @return A future completed with the returned Object from the Action Method
+	 */
+	public CompletableFuture<Object> onEventAsync(final String event, final Object id, final Object[] parms) {
+		return this.eventDispatcher.dispatch(id, new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				return fsmHarness.onEvent(event, id, parms);
+			}
+		});
+	}
+
+	public FSMHarness getFSMHarness() {
+		return fsmHarness;
+	}
+
+	public EventDispatcher getEventDispatcher() {
+		return eventDispatcher;
+	}
+
+	private static Object await(CompletableFuture<Object> future) throws TooBusyException, InstantiationException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TooBusyException) {
+				throw (TooBusyException)cause;
+			}
+			if (cause instanceof InstantiationException) {
+				throw (InstantiationException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
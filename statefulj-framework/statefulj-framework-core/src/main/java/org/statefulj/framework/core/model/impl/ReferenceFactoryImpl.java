@@ -48,6 +48,11 @@ public class ReferenceFactoryImpl implements ReferenceFactory {
 		return decapitalize(ctrl + ".fsmHarness");
 	}
 
+	@Override
+	public String getDispatchedFSMHarnessId() {
+		return decapitalize(ctrl + ".dispatchedFSMHarness");
+	}
+
 	@Override
 	public String getPersisterId() {
 		return decapitalize(ctrl + ".persister");
@@ -19,14 +19,20 @@ package org.statefulj.framework.core.model.impl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.statefulj.framework.core.model.Factory;
 import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.fsm.EventKey;
+import org.statefulj.fsm.EventOutcome;
 import org.statefulj.fsm.FSM;
 import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.TransitionTable;
 
 public class StatefulFSMImpl<T> implements StatefulFSM<T> {
 	
@@ -46,6 +52,26 @@ public class StatefulFSMImpl<T> implements StatefulFSM<T> {
 		this.clazz = clazz;
 		this.factory = factory;
 	}
+
+	/**
+	 * Constructs the StatefulFSM and compiles the Transitions of the States into the FSM.  All
+	 * Transitions must have been added to the States
+	 *
+	 * @param fsm The FSM
+	 * @param clazz The class of the Stateful Entity
+	 * @param factory The Factory for new Stateful Entities
+	 * @param states The States of the FSM
+	 */
+	public StatefulFSMImpl(
+			FSM<T> fsm,
+			Class<T> clazz,
+			Factory<T, ?> factory,
+			List<State<T>> states) {
+		this(fsm, clazz, factory);
+		if (fsm.getTransitionTable() == null) {
+			fsm.setTransitionTable(new TransitionTable<T>(states));
+		}
+	}
 	
 	@Override
 	public Object onEvent(String event, Object... parms) throws TooBusyException {
@@ -59,20 +85,62 @@ public class StatefulFSMImpl<T> implements StatefulFSM<T> {
 
 	@Override
 	public Object onEvent(T stateful, String event, Object... parms) throws TooBusyException {
+		MutableObject<T> returnValue = new MutableObject<T>();
+
+		// Call the FSM
+		//
+		fsm.onEvent(stateful, event, invokeParms(returnValue, parms));
+		return returnValue.getValue();
+	}
+
+	@Override
+	public Object onEvent(EventKey event, Object... parms) throws TooBusyException {
+		T stateful = this.factory.create(this.clazz, event.getEvent(), null);
+		if (stateful == null) {
+			logger.error("Unable to create object of type {}, event={}", clazz.getName(), event);
+			throw new RuntimeException("Unable to create object of type " + clazz.getName() + ", event=" + event);
+		}
+		return onEvent(stateful, event, parms);
+	}
+
+	@Override
+	public Object onEvent(T stateful, EventKey event, Object... parms) throws TooBusyException {
+		MutableObject<T> returnValue = new MutableObject<T>();
+
+		// Call the FSM
+		//
+		fsm.onEvent(stateful, event, invokeParms(returnValue, parms));
+		return returnValue.getValue();
+	}
+
+	@Override
+	public List<EventOutcome<T>> onEvents(Collection<T> statefuls, String event, Object... parms) {
+
+		// The Actions share a single holder, as their returned values are discarded
+		//
+		return fsm.onEvents(statefuls, event, invokeParms(new MutableObject<T>(), parms));
+	}
+
+	@Override
+	public List<EventOutcome<T>> onEvents(Collection<T> statefuls, EventKey event, Object... parms) {
+		return fsm.onEvents(statefuls, event, invokeParms(new MutableObject<T>(), parms));
+	}
+
+	@Override
+	public EventKey getEventKey(String event) {
+		return this.fsm.getEventKey(event);
+	}
+
+	private Object[] invokeParms(MutableObject<T> returnValue, Object... parms) {
 		ArrayList<Object> parmList = new ArrayList<Object>(Arrays.asList(parms));
-		
-		// Create a Mutable Object and add it to the Parameter List - it will be used
+
+		// Add the Mutable Object to the Parameter List - it will be used
 		// to return the returned value from the Controller as the FSM returns the State
 		//
-		MutableObject<T> returnValue = new MutableObject<T>();
 		ArrayList<Object> invokeParmlist = new ArrayList<Object>(parms.length + 1);
 		invokeParmlist.add(returnValue);
 		invokeParmlist.addAll(parmList);
-		
-		// Call the FSM
-		// 
-		fsm.onEvent(stateful, event, invokeParmlist.toArray());
-		return returnValue.getValue();
+		return invokeParmlist.toArray();
 	}
 
 }
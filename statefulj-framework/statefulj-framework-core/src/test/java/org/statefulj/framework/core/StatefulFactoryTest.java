@@ -17,6 +17,7 @@
  */
 package org.statefulj.framework.core;
 
+import org.apache.commons.lang3.mutable.MutableObject;
 import org.alternative.AltTestRepositoryFactoryBeanSupport;
 import org.alternative.AltTestUserController;
 import org.alternative.AltTestUserRepository;
@@ -27,15 +28,20 @@ import static org.junit.Assert.*;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.statefulj.framework.core.actions.MethodInvocationAction;
 import org.statefulj.framework.core.controllers.FailedMemoryController;
+import org.statefulj.framework.core.controllers.GeneratedActionController;
+import org.statefulj.framework.core.controllers.GroupCommitController;
 import org.statefulj.framework.core.controllers.MemoryController;
 import org.statefulj.framework.core.controllers.NoRetryController;
+import org.statefulj.framework.core.controllers.OptimisticController;
 import org.statefulj.framework.core.controllers.UserController;
 import org.statefulj.framework.core.dao.UserRepository;
 import org.statefulj.framework.core.mocks.MockBeanDefinitionRegistryImpl;
 import org.statefulj.framework.core.mocks.MockProxy;
 import org.statefulj.framework.core.mocks.MockRepositoryFactoryBeanSupport;
 import org.statefulj.framework.core.model.ReferenceFactory;
+import org.statefulj.framework.core.model.User;
 import org.statefulj.framework.core.model.impl.ReferenceFactoryImpl;
 import org.statefulj.persistence.memory.MemoryPersisterImpl;
 
@@ -183,6 +189,129 @@ public class StatefulFactoryTest {
 		assertNull(harness);
 	}
 
+	@Test
+	public void testGeneratedActions() throws ClassNotFoundException, NoSuchMethodException, SecurityException {
+		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
+		
+		BeanDefinition generatedActionController = BeanDefinitionBuilder
+				.genericBeanDefinition(GeneratedActionController.class)
+				.getBeanDefinition();
+
+		registry.registerBeanDefinition("generatedActionController", generatedActionController);
+	
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("generatedActionController");
+		StatefulFactory factory = new StatefulFactory();
+		
+		factory.postProcessBeanDefinitionRegistry(registry);
+
+		// Public methods get a generated Action
+		//
+		BeanDefinition oneToTwo = registry.getBeanDefinition(refFactory.getActionId(
+				GeneratedActionController.class.getDeclaredMethod("oneToTwo", User.class, String.class, int.class)));
+		Class<?> generated = Class.forName(oneToTwo.getBeanClassName());
+		assertTrue(MethodInvocationAction.class.isAssignableFrom(generated));
+		assertNotEquals(MethodInvocationAction.class, generated);
+
+		// Everything else falls back to the MethodInvocationAction
+		//
+		BeanDefinition twoToThree = registry.getBeanDefinition(refFactory.getActionId(
+				GeneratedActionController.class.getDeclaredMethod("twoToThree", User.class, String.class)));
+		assertEquals(MethodInvocationAction.class.getName(), twoToThree.getBeanClassName());
+	}
+
+	@Test
+	public void testGeneratedActionInvokesController() throws Exception {
+		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
+		
+		BeanDefinition generatedActionController = BeanDefinitionBuilder
+				.genericBeanDefinition(GeneratedActionController.class)
+				.getBeanDefinition();
+
+		registry.registerBeanDefinition("generatedActionController", generatedActionController);
+	
+		ReferenceFactory refFactory = new ReferenceFactoryImpl("generatedActionController");
+		StatefulFactory factory = new StatefulFactory();
+		
+		factory.postProcessBeanDefinitionRegistry(registry);
+
+		Class<?>[] parameters = new Class<?>[] { User.class, String.class, int.class };
+		BeanDefinition oneToTwo = registry.getBeanDefinition(refFactory.getActionId(
+				GeneratedActionController.class.getDeclaredMethod("oneToTwo", parameters)));
+		Class<?> generated = Class.forName(oneToTwo.getBeanClassName());
+
+		// Build the generated Action as the Spring container would, then execute it
+		//
+		GeneratedActionController controller = new GeneratedActionController();
+		MethodInvocationAction action = (MethodInvocationAction)generated
+				.getConstructor(String.class, Class[].class, org.statefulj.fsm.FSM.class, Object.class)
+				.newInstance("oneToTwo", parameters, null, controller);
+
+		User user = new User();
+		MutableObject<Object> returnValue = new MutableObject<Object>();
+		action.execute(user, "one", returnValue, 42);
+
+		assertSame(user, controller.user);
+		assertEquals("one", controller.event);
+		assertEquals(42, controller.count);
+		assertSame(user, returnValue.getValue());
+	}
+
+	@Test
+	public void testUnsupportedGroupCommit() throws ClassNotFoundException {
+		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
+		
+		BeanDefinition userRepo = BeanDefinitionBuilder
+				.genericBeanDefinition(MockRepositoryFactoryBeanSupport.class)
+				.getBeanDefinition();
+		userRepo.getPropertyValues().add("repositoryInterface", UserRepository.class.getName());
+
+		registry.registerBeanDefinition("userRepo", userRepo);
+	
+		BeanDefinition groupCommitController = BeanDefinitionBuilder
+				.genericBeanDefinition(GroupCommitController.class)
+				.getBeanDefinition();
+
+		registry.registerBeanDefinition("groupCommitController", groupCommitController);
+	
+		StatefulFactory factory = new StatefulFactory();
+		
+		try {
+			factory.postProcessBeanDefinitionRegistry(registry);
+			fail("Expected RuntimeException");
+		} catch(RuntimeException e) {
+			assertTrue(e.getMessage().contains("groupCommitController"));
+			assertTrue(e.getMessage().contains("groupCommitSize"));
+		}
+	}
+
+	@Test
+	public void testUnsupportedOptimistic() throws ClassNotFoundException {
+		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
+		
+		BeanDefinition userRepo = BeanDefinitionBuilder
+				.genericBeanDefinition(MockRepositoryFactoryBeanSupport.class)
+				.getBeanDefinition();
+		userRepo.getPropertyValues().add("repositoryInterface", UserRepository.class.getName());
+
+		registry.registerBeanDefinition("userRepo", userRepo);
+	
+		BeanDefinition optimisticController = BeanDefinitionBuilder
+				.genericBeanDefinition(OptimisticController.class)
+				.getBeanDefinition();
+
+		registry.registerBeanDefinition("optimisticController", optimisticController);
+	
+		StatefulFactory factory = new StatefulFactory();
+		
+		try {
+			factory.postProcessBeanDefinitionRegistry(registry);
+			fail("Expected RuntimeException");
+		} catch(RuntimeException e) {
+			assertTrue(e.getMessage().contains("optimisticController"));
+			assertTrue(e.getMessage().contains(": optimistic isn't supported"));
+		}
+	}
+
 	@Test(expected=RuntimeException.class)
 	public void testMemoryFailurePersistor() throws ClassNotFoundException {
 		BeanDefinitionRegistry registry = new MockBeanDefinitionRegistryImpl();
@@ -0,0 +1,139 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.framework.core.actions;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.junit.Test;
+import org.statefulj.framework.core.fsm.ContextWrapper;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.TooBusyException;
+
+public class MethodInvocationActionTest {
+
+	public static class Controller {
+
+		Object stateful;
+
+		String event;
+
+		int count;
+
+		@SuppressWarnings("unused")
+		private String handle(Object stateful, String event, int count) {
+			this.stateful = stateful;
+			this.event = event;
+			this.count = count;
+			return "handled";
+		}
+
+		public String forward(Object stateful, String event) {
+			return "event:next";
+		}
+
+		public void retry(Object stateful, String event) throws RetryException {
+			throw new RetryException("retry");
+		}
+	}
+
+	@Test
+	public void testInvokePrivateMethod() throws RetryException {
+		Controller controller = new Controller();
+		MethodInvocationAction action = new MethodInvocationAction(
+				"handle",
+				new Class<?>[] { Object.class, String.class, int.class },
+				null,
+				controller);
+
+		Object stateful = new Object();
+		MutableObject<Object> returnValue = new MutableObject<Object>();
+		action.execute(stateful, "pow", returnValue, 7);
+
+		assertSame(stateful, controller.stateful);
+		assertEquals("pow", controller.event);
+		assertEquals(7, controller.count);
+		assertEquals("handled", returnValue.getValue());
+	}
+
+	@Test
+	public void testContextWrapperIsSkipped() throws RetryException {
+		Controller controller = new Controller();
+		MethodInvocationAction action = new MethodInvocationAction(
+				"handle",
+				new Class<?>[] { Object.class, String.class, int.class },
+				null,
+				controller);
+
+		MutableObject<Object> returnValue = new MutableObject<Object>();
+		action.execute(new Object(), "pow", returnValue, new ContextWrapper<Object>(null), 8);
+
+		assertEquals(8, controller.count);
+		assertEquals("handled", returnValue.getValue());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testEventIsForwarded() throws RetryException, TooBusyException {
+		FSM<Object> fsm = mock(FSM.class);
+		MethodInvocationAction action = new MethodInvocationAction(
+				"forward",
+				new Class<?>[] { Object.class, String.class },
+				fsm,
+				new Controller());
+
+		Object stateful = new Object();
+		MutableObject<Object> returnValue = new MutableObject<Object>();
+		Object[] parms = new Object[] { returnValue };
+		action.execute(stateful, "pow", parms);
+
+		verify(fsm).onEvent(stateful, "next", parms);
+		assertNull(returnValue.getValue());
+	}
+
+	@Test(expected=RetryException.class)
+	public void testRetryExceptionIsNotWrapped() throws RetryException {
+		MethodInvocationAction action = new MethodInvocationAction(
+				"retry",
+				new Class<?>[] { Object.class, String.class },
+				null,
+				new Controller());
+		action.execute(new Object(), "pow", new MutableObject<Object>());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testMissingMethod() {
+		new MethodInvocationAction(
+				"missing",
+				new Class<?>[] { Object.class, String.class },
+				null,
+				new Controller());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testTooFewParameters() throws RetryException {
+		MethodInvocationAction action = new MethodInvocationAction(
+				"handle",
+				new Class<?>[] { Object.class, String.class, int.class },
+				null,
+				new Controller());
+		action.execute(new Object(), "pow", new MutableObject<Object>());
+	}
+}
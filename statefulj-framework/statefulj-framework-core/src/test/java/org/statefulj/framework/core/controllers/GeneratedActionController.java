@@ -0,0 +1,60 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.core.controllers;
+
+import org.statefulj.framework.core.annotations.FSM;
+import org.statefulj.framework.core.annotations.StatefulController;
+import org.statefulj.framework.core.annotations.Transition;
+import org.statefulj.framework.core.model.StatefulFSM;
+import org.statefulj.framework.core.model.User;
+
+@StatefulController(
+	clazz=User.class, 
+	startState=GeneratedActionController.ONE_STATE,
+	generateActions=true
+)
+public class GeneratedActionController {
+	
+	// States
+	//
+	public static final String ONE_STATE = "one";
+	public static final String TWO_STATE = "two";
+	public static final String THREE_STATE = "three";
+	
+	@FSM
+	StatefulFSM<User> fsm;
+
+	// Arguments of the last call to oneToTwo
+	//
+	public User user;
+	public String event;
+	public int count;
+	
+	@Transition(from=ONE_STATE, event="one", to=TWO_STATE)
+	public User oneToTwo(User user, String event, int count) {
+		this.user = user;
+		this.event = event;
+		this.count = count;
+		return user;
+	}
+
+	@Transition(from=TWO_STATE, event="two", to=THREE_STATE)
+	protected void twoToThree(User user, String event) {
+	}
+
+}
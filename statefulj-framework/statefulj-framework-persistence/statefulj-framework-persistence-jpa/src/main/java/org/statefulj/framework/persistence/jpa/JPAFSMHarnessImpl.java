@@ -17,20 +17,68 @@
  */
 package org.statefulj.framework.persistence.jpa;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.statefulj.framework.core.model.Factory;
 import org.statefulj.framework.core.model.Finder;
 import org.statefulj.framework.core.model.StatefulFSM;
 import org.statefulj.framework.core.model.impl.FSMHarnessImpl;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.TooBusyException;
 
-public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> {
+public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> implements DisposableBean {
 	
+	private static final Logger logger = LoggerFactory.getLogger(JPAFSMHarnessImpl.class);
+
+	private static final long DEFAULT_GROUP_COMMIT_WINDOW = 5;
+
+	private static final int DEFAULT_RETRY_ATTEMPTS = 20;
+
+	private static final int DEFAULT_RETRY_INTERVAL = 250;
+
+	// Returned to the caller of an Event which must be applied outside of its group
+	//
+	private static final Object APPLY_ALONE = new Object();
+
 	private PlatformTransactionManager transactionManager;
 	
+	private int groupCommitSize = 1;
+
+	private long groupCommitWindow = DEFAULT_GROUP_COMMIT_WINDOW;
+
+	private boolean optimistic = false;
+
+	private int retryAttempts = DEFAULT_RETRY_ATTEMPTS;
+
+	private int retryInterval = DEFAULT_RETRY_INTERVAL;
+
+	private BlockingQueue<PendingEvent> pendingEvents;
+
+	private volatile Thread committer;
+
 	public JPAFSMHarnessImpl(
 			StatefulFSM<T> fsm, 
 			Class<T> clazz, 
@@ -43,6 +91,25 @@ public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> {
 	
 	@Override
 	public Object onEvent(final String event, final Object id, final Object[] parms) throws TooBusyException {
+		if (this.groupCommitSize > 1) {
+
+			// An Event raised by an Action of the group, or by a caller within its own transaction,
+			// is applied within that transaction rather than being queued
+			//
+			if (TransactionSynchronizationManager.isActualTransactionActive()) {
+				return super.onEvent(event, id, parms);
+			}
+
+			PendingEvent pending = new PendingEvent(event, id, parms);
+			enqueue(pending);
+			Object result = await(pending.result);
+			if (result != APPLY_ALONE) {
+				return result;
+			}
+		} else if (this.optimistic) {
+			return onEventOptimistically(event, id, parms);
+		}
+
 		TransactionTemplate tt = new TransactionTemplate(transactionManager);
 		return tt.execute(new TransactionCallback<Object>() {
 
@@ -57,4 +124,345 @@ public class JPAFSMHarnessImpl<T, CT> extends FSMHarnessImpl<T, CT> {
 			
 		});
 	}
+
+	/**
+	 * In optimistic mode, a change which conflicts with another transaction is only detected when the
+	 * Persistence Context is flushed, after the Event has been applied.  The transaction is then rolled
+	 * back and the Event applied again, in a new transaction, to the reloaded Entity.  A rollback can't be
+	 * retried within a caller's transaction, so an Event from a caller which already has one is applied
+	 * within it only once, and a conflict is reported as a {@link TooBusyException}
+	 */
+	private Object onEventOptimistically(String event, Object id, Object[] parms) throws TooBusyException {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			Object result = super.onEvent(event, id, parms);
+			try {
+				flush();
+			} catch(StaleStateException e) {
+				logger.error("Event {} to id={} conflicted with another transaction, and can't be retried within the caller's transaction", event, id);
+				throw new TooBusyException();
+			}
+			return result;
+		}
+
+		int attempts = 0;
+		while (true) {
+			TransactionStatus status = this.transactionManager.getTransaction(new DefaultTransactionDefinition());
+			Object result = null;
+			try {
+				result = super.onEvent(event, id, parms);
+				flush();
+			} catch(StaleStateException e) {
+				this.transactionManager.rollback(status);
+				attempts++;
+				if (this.retryAttempts != -1 && attempts >= this.retryAttempts) {
+					logger.error("Unable to apply event {} to id={}, attempts={}", event, id, attempts);
+					throw new TooBusyException();
+				}
+				logger.debug("Event {} conflicted with another transaction, retrying", event);
+				sleep(this.retryInterval);
+				continue;
+			} catch(TooBusyException e) {
+				this.transactionManager.rollback(status);
+				throw e;
+			} catch(RuntimeException e) {
+				this.transactionManager.rollback(status);
+				throw e;
+			} catch(Error e) {
+				this.transactionManager.rollback(status);
+				throw e;
+			}
+			this.transactionManager.commit(status);
+			return result;
+		}
+	}
+
+	private void flush() throws StaleStateException {
+		try {
+			getEntityManager().flush();
+		} catch(OptimisticLockException e) {
+			throw new StaleStateException(e.getMessage());
+		} catch(OptimisticLockingFailureException e) {
+			throw new StaleStateException(e.getMessage());
+		}
+	}
+
+	private EntityManager getEntityManager() {
+		return EntityManagerFactoryUtils.getTransactionalEntityManager(
+				((JpaTransactionManager)this.transactionManager).getEntityManagerFactory());
+	}
+
+	private static void sleep(int wait) {
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	public boolean isOptimistic() {
+		return optimistic;
+	}
+
+	/**
+	 * Set whether the Persister qualifies State changes by the Version of the Entity.  If so, the
+	 * Persistence Context is flushed after each Event and an Event which conflicts with another
+	 * transaction is retried.  Requires a {@link JpaTransactionManager}, and isn't supported with
+	 * group commit
+	 *
+	 * @param optimistic whether the Persister is optimistic
+	 */
+	public void setOptimistic(boolean optimistic) {
+		if (optimistic) {
+			if (!(this.transactionManager instanceof JpaTransactionManager)) {
+				throw new RuntimeException("Optimistic mode requires a JpaTransactionManager");
+			}
+			if (this.groupCommitSize > 1) {
+				throw new RuntimeException("Group commit isn't supported in optimistic mode");
+			}
+		}
+		this.optimistic = optimistic;
+	}
+
+	public int getRetryAttempts() {
+		return retryAttempts;
+	}
+
+	/**
+	 * Set the number of times an Event which conflicts with another transaction is attempted in
+	 * optimistic mode.  If -1, the Event is always attempted again
+	 *
+	 * @param retryAttempts number of attempts
+	 */
+	public void setRetryAttempts(int retryAttempts) {
+		this.retryAttempts = retryAttempts;
+	}
+
+	public int getRetryInterval() {
+		return retryInterval;
+	}
+
+	/**
+	 * @param retryInterval interval, in milliseconds, between attempts in optimistic mode
+	 */
+	public void setRetryInterval(int retryInterval) {
+		this.retryInterval = retryInterval;
+	}
+
+	public int getGroupCommitSize() {
+		return groupCommitSize;
+	}
+
+	/**
+	 * Set the maximum number of Events applied within one transaction.  If greater than 1, Events from
+	 * all calling threads are queued and applied by a single committing thread, each Event within its
+	 * own savepoint, so that a failed Event doesn't roll back the others.  Each caller waits until the
+	 * shared transaction has committed.  An Event raised by an Action is applied immediately within the
+	 * savepoint of the Event that raised it.  The committing thread never waits to retry, as it holds
+	 * the locks of the whole group; an Event which must wait is rolled back to its savepoint and applied
+	 * by its caller within its own transaction.  An Event from a caller which already has a transaction
+	 * is applied within it, and not queued.  Requires a {@link JpaTransactionManager} that allows
+	 * nested transactions and a JPA provider that supports savepoints
+	 *
+	 * @param groupCommitSize maximum number of Events per transaction
+	 */
+	public void setGroupCommitSize(int groupCommitSize) {
+		if (groupCommitSize > 1 && !(this.transactionManager instanceof JpaTransactionManager)) {
+			throw new RuntimeException("Group commit requires a JpaTransactionManager");
+		}
+		if (groupCommitSize > 1 && !((JpaTransactionManager)this.transactionManager).isNestedTransactionAllowed()) {
+			throw new RuntimeException("Group commit requires a JpaTransactionManager that allows nested transactions");
+		}
+		if (groupCommitSize > 1 && this.optimistic) {
+			throw new RuntimeException("Group commit isn't supported in optimistic mode");
+		}
+		this.groupCommitSize = groupCommitSize;
+	}
+
+	public long getGroupCommitWindow() {
+		return groupCommitWindow;
+	}
+
+	/**
+	 * Set how long, in milliseconds, the first Event of a group waits for further Events before the
+	 * group is applied
+	 *
+	 * @param groupCommitWindow window in milliseconds
+	 */
+	public void setGroupCommitWindow(long groupCommitWindow) {
+		this.groupCommitWindow = groupCommitWindow;
+	}
+
+	/**
+	 * Interrupts the committing thread.  Events still queued fail, and a later Event starts a new
+	 * committing thread
+	 */
+	@Override
+	public synchronized void destroy() {
+		if (this.committer != null) {
+			this.committer.interrupt();
+		}
+	}
+
+	private synchronized void enqueue(PendingEvent pending) {
+		if (this.pendingEvents == null) {
+			this.pendingEvents = new LinkedBlockingQueue<PendingEvent>();
+			this.committer = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					commitGroups();
+				}
+			}, "statefulj-group-commit");
+			this.committer.setDaemon(true);
+			this.committer.start();
+		}
+		this.pendingEvents.add(pending);
+	}
+
+	private void commitGroups() {
+		FSM.setWaitRefused(true);
+		BlockingQueue<PendingEvent> queue = this.pendingEvents;
+		List<PendingEvent> group = new ArrayList<PendingEvent>(this.groupCommitSize);
+		try {
+			while (true) {
+				group.add(queue.take());
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.groupCommitWindow);
+				while (group.size() < this.groupCommitSize) {
+					PendingEvent pending = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (pending == null) {
+						break;
+					}
+					group.add(pending);
+				}
+				commitGroup(group);
+				group.clear();
+			}
+		} catch(InterruptedException e) {
+			logger.debug("Group commit interrupted");
+			fail(group, e);
+		} finally {
+
+			// Stop queueing on this thread, so that the next Event starts a new committing thread,
+			// and fail whatever is left in the queue
+			//
+			synchronized(this) {
+				if (this.pendingEvents == queue) {
+					this.pendingEvents = null;
+					this.committer = null;
+				}
+			}
+			fail(group, new RuntimeException("Group commit stopped"));
+			List<PendingEvent> remaining = new ArrayList<PendingEvent>();
+			queue.drainTo(remaining);
+			fail(remaining, new RuntimeException("Group commit stopped"));
+		}
+	}
+
+	private static void fail(List<PendingEvent> events, Throwable t) {
+		for (PendingEvent pending : events) {
+			pending.result.completeExceptionally(t);
+		}
+	}
+
+	/**
+	 * Apply a group of Events within one transaction.  Each Event is flushed before its savepoint is
+	 * released, so that rolling back a later Event can discard the Persistence Context without losing
+	 * the changes of the earlier ones.  Entities loaded by the earlier Events are detached by the clear,
+	 * so a later Event reloads them, and the results handed back to their callers are detached, as they
+	 * would be once the transaction commits.  An Event which is too busy may only have refused to wait,
+	 * so it's handed back to its caller.  An Error fails the group, but not the committing thread
+	 */
+	private void commitGroup(final List<PendingEvent> group) {
+		final Object[] results = new Object[group.size()];
+		final Exception[] errors = new Exception[group.size()];
+
+		try {
+			TransactionTemplate tt = new TransactionTemplate(transactionManager);
+			tt.execute(new TransactionCallbackWithoutResult() {
+
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					EntityManager entityManager = getEntityManager();
+
+					for (int i = 0; i < results.length; i++) {
+						PendingEvent pending = group.get(i);
+						Object savepoint = null;
+						try {
+							savepoint = status.createSavepoint();
+							results[i] = JPAFSMHarnessImpl.super.onEvent(pending.event, pending.id, pending.parms);
+							entityManager.flush();
+							status.releaseSavepoint(savepoint);
+						} catch(Exception e) {
+							if (savepoint != null) {
+								logger.debug("Event {} failed, rolling back to savepoint", pending.event, e);
+								status.rollbackToSavepoint(savepoint);
+								entityManager.clear();
+							}
+							if (e instanceof TooBusyException) {
+								results[i] = APPLY_ALONE;
+							} else {
+								errors[i] = e;
+							}
+						}
+					}
+				}
+			});
+		} catch(RuntimeException e) {
+			fail(group, e);
+			return;
+		} catch(Error e) {
+			logger.error("Group commit failed", e);
+			fail(group, e);
+			return;
+		}
+
+		for (int i = 0; i < results.length; i++) {
+			if (errors[i] != null) {
+				group.get(i).result.completeExceptionally(errors[i]);
+			} else {
+				group.get(i).result.complete(results[i]);
+			}
+		}
+	}
+
+	private static Object await(CompletableFuture<Object> future) throws TooBusyException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TooBusyException) {
+				throw (TooBusyException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * An Event waiting for its group to be committed
+	 */
+	private static class PendingEvent {
+
+		private final String event;
+		private final Object id;
+		private final Object[] parms;
+		private final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+		private PendingEvent(String event, Object id, Object[] parms) {
+			this.event = event;
+			this.id = id;
+			this.parms = parms;
+		}
+	}
 }
@@ -18,6 +18,9 @@
 package org.statefulj.framework.tests;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -28,6 +31,7 @@ import org.junit.runner.RunWith;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
@@ -44,9 +48,13 @@ import org.statefulj.framework.core.model.StatefulFSM;
 import org.statefulj.framework.core.model.impl.ReferenceFactoryImpl;
 import org.statefulj.framework.tests.clients.FSMClient1;
 import org.statefulj.framework.tests.clients.FSMClient2;
+import org.statefulj.framework.tests.controllers.GroupCommitController;
+import org.statefulj.framework.tests.controllers.OptimisticController;
 import org.statefulj.framework.tests.dao.UserRepository;
+import org.statefulj.framework.tests.dao.VersionedUserRepository;
 import org.statefulj.framework.tests.model.MemoryObject;
 import org.statefulj.framework.tests.model.User;
+import org.statefulj.framework.tests.model.VersionedUser;
 
 import static org.statefulj.framework.tests.utils.ReflectionUtils.*;
 
@@ -89,6 +97,21 @@ public class StatefulControllerTest {
 	@Resource
 	FSMClient2 fsmClient2;
 
+	@Resource
+	VersionedUserRepository versionedUserRepo;
+
+	@Resource
+	OptimisticController optimisticController;
+
+	@Resource(name="optimisticController.fsmHarness")
+	FSMHarness optimisticFSMHarness;
+
+	@Resource
+	GroupCommitController groupCommitController;
+
+	@Resource(name="groupCommitController.fsmHarness")
+	FSMHarness groupCommitFSMHarness;
+
 	@Test
 	public void testConstructorInjectionWithDisambiquation() {
 		assertNotNull(fsmClient1.userStatefulFSM);
@@ -350,6 +373,226 @@ public class StatefulControllerTest {
 		assertEquals(MemoryObject.TWO_STATE, memObject.getState());
 	}
 
+	@Test
+	public void testOptimisticRetry() throws TooBusyException {
+		final Long id = versionedUserRepo.save(new VersionedUser()).getId();
+
+		// Another transaction changes the User while the first attempt is applied, which is only
+		// detected when the FSMHarness flushes; the second attempt is applied to the reloaded User
+		//
+		optimisticController.setCompetitor(new Runnable() {
+
+			@Override
+			public void run() {
+				Thread t = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						TransactionTemplate tt = new TransactionTemplate(transactionManager);
+						tt.execute(new TransactionCallback<Object>() {
+
+							@Override
+							public Object doInTransaction(TransactionStatus status) {
+								VersionedUser user = versionedUserRepo.findOne(id);
+								user.setLogins(user.getLogins() + 1);
+								return null;
+							}
+
+						});
+					}
+				});
+				t.start();
+				try {
+					t.join();
+				} catch(InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		int attempts = optimisticController.getAttempts();
+
+		optimisticFSMHarness.onEvent("login", id, new Object[]{ null });
+
+		VersionedUser user = versionedUserRepo.findOne(id);
+		assertEquals(2, optimisticController.getAttempts() - attempts);
+		assertEquals(VersionedUser.TWO_STATE, user.getState());
+		assertEquals(2, user.getLogins());
+	}
+
+	@Test
+	public void testOptimisticInOuterTransaction() {
+		final Long id = versionedUserRepo.save(new VersionedUser()).getId();
+
+		// The conflict can't be retried within the caller's transaction, so the Event is only attempted once
+		//
+		optimisticController.setCompetitor(new Runnable() {
+
+			@Override
+			public void run() {
+				Thread t = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						TransactionTemplate tt = new TransactionTemplate(transactionManager);
+						tt.execute(new TransactionCallback<Object>() {
+
+							@Override
+							public Object doInTransaction(TransactionStatus status) {
+								VersionedUser user = versionedUserRepo.findOne(id);
+								user.setLogins(user.getLogins() + 1);
+								return null;
+							}
+
+						});
+					}
+				});
+				t.start();
+				try {
+					t.join();
+				} catch(InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		int attempts = optimisticController.getAttempts();
+
+		TransactionTemplate tt = new TransactionTemplate(transactionManager);
+		Object error = tt.execute(new TransactionCallback<Object>() {
+
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				try {
+					optimisticFSMHarness.onEvent("login", id, new Object[]{ null });
+					return null;
+				} catch(TooBusyException e) {
+					status.setRollbackOnly();
+					return e;
+				}
+			}
+
+		});
+
+		VersionedUser user = versionedUserRepo.findOne(id);
+		assertNotNull(error);
+		assertEquals(1, optimisticController.getAttempts() - attempts);
+		assertEquals(VersionedUser.ONE_STATE, user.getState());
+		assertEquals(1, user.getLogins());
+	}
+
+	@Test(timeout=10000)
+	public void testGroupCommit() throws InterruptedException {
+		final List<Long> ids = new ArrayList<Long>();
+		for (int i = 0; i < 4; i++) {
+			ids.add(userRepo.save(new User()).getId());
+		}
+
+		// Send the Events together so that they're applied as one group; the failed Event is rolled back
+		// to its savepoint without rolling back the others
+		//
+		final String[] events = { "group", "group", "fail", "group" };
+		final Exception[] errors = new Exception[events.length];
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < events.length; i++) {
+			final int index = i;
+			Thread t = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						groupCommitFSMHarness.onEvent(events[index], ids.get(index), new Object[]{ null });
+					} catch(Exception e) {
+						errors[index] = e;
+					}
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		for (int i = 0; i < events.length; i++) {
+			User user = userRepo.findOne(ids.get(i));
+			if ("fail".equals(events[i])) {
+				assertNotNull(errors[i]);
+				assertEquals(User.ONE_STATE, user.getState());
+			} else {
+				assertNull(errors[i]);
+				assertEquals(User.TWO_STATE, user.getState());
+			}
+		}
+	}
+
+	@Test(timeout=10000)
+	public void testGroupCommitReentrantEvent() throws TooBusyException {
+		Long id = userRepo.save(new User()).getId();
+		Long next = userRepo.save(new User()).getId();
+
+		// The Action raises an Event on the committing thread, which must not wait for its own group
+		//
+		groupCommitFSMHarness.onEvent("chain", id, new Object[]{ null, next });
+
+		assertEquals(User.TWO_STATE, userRepo.findOne(id).getState());
+		assertEquals(User.TWO_STATE, userRepo.findOne(next).getState());
+	}
+
+	@Test(timeout=10000)
+	public void testGroupCommitWaitIsAppliedAlone() throws TooBusyException {
+		Long id = userRepo.save(new User()).getId();
+		int waits = groupCommitController.getWaits();
+
+		// The committing thread refuses to wait, so the Event is handed back and retried by the caller
+		//
+		groupCommitFSMHarness.onEvent("wait", id, new Object[]{ null });
+
+		assertEquals(2, groupCommitController.getWaits() - waits);
+		assertEquals(User.TWO_STATE, userRepo.findOne(id).getState());
+	}
+
+	@Test(timeout=10000)
+	public void testGroupCommitInOuterTransaction() {
+		final Long id = userRepo.save(new User()).getId();
+
+		// The Event is applied within the caller's transaction, so it's rolled back with it
+		//
+		TransactionTemplate tt = new TransactionTemplate(transactionManager);
+		tt.execute(new TransactionCallback<Object>() {
+
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				try {
+					groupCommitFSMHarness.onEvent("group", id, new Object[]{ null });
+				} catch(TooBusyException e) {
+					throw new RuntimeException(e);
+				}
+				assertEquals(User.TWO_STATE, userRepo.findOne(id).getState());
+				status.setRollbackOnly();
+				return null;
+			}
+
+		});
+
+		assertEquals(User.ONE_STATE, userRepo.findOne(id).getState());
+	}
+
+	@Test(timeout=10000)
+	public void testGroupCommitRestartsAfterDestroy() throws Exception {
+		Long id = userRepo.save(new User()).getId();
+		groupCommitFSMHarness.onEvent("group", id, new Object[]{ null });
+
+		// Destroying the Harness stops the committing thread; the next Event starts a new one
+		//
+		((DisposableBean)groupCommitFSMHarness).destroy();
+
+		Long next = userRepo.save(new User()).getId();
+		groupCommitFSMHarness.onEvent("group", next, new Object[]{ null });
+		assertEquals(User.TWO_STATE, userRepo.findOne(next).getState());
+	}
+
 	@Test(expected=RuntimeException.class)
 	public void testFailedReloadForInMemoryController() throws TooBusyException {
 		MemoryObject memObject = new MemoryObject();
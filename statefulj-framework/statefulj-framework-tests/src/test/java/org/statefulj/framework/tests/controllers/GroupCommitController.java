@@ -0,0 +1,80 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.tests.controllers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.springframework.context.ApplicationContext;
+import org.statefulj.framework.core.annotations.StatefulController;
+import org.statefulj.framework.core.annotations.Transition;
+import org.statefulj.framework.core.model.FSMHarness;
+import org.statefulj.framework.tests.model.User;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.WaitAndRetryException;
+
+import static org.statefulj.framework.tests.model.User.*;
+
+@StatefulController(
+	clazz=User.class,
+	startState=ONE_STATE,
+	groupCommitSize=4,
+	groupCommitWindow=100
+)
+public class GroupCommitController {
+
+	@Resource
+	ApplicationContext appContext;
+
+	private final AtomicInteger waits = new AtomicInteger();
+
+	@Transition(from=ONE_STATE, event="group", to=TWO_STATE)
+	public void group(User user, String event) {
+	}
+
+	@Transition(from=ONE_STATE, event="fail", to=TWO_STATE)
+	public void fail(User user, String event) {
+		throw new RuntimeException("Failed");
+	}
+
+	@Transition(from=ONE_STATE, event="chain", to=TWO_STATE)
+	public void chain(User user, String event, Long next) throws TooBusyException {
+
+		// The Harness is looked up as it depends on this Controller
+		//
+		FSMHarness harness = (FSMHarness)this.appContext.getBean("groupCommitController.fsmHarness");
+		harness.onEvent("group", next, new Object[]{ null });
+	}
+
+	@Transition(from=ONE_STATE, event="wait", to=TWO_STATE)
+	public void waitOnce(User user, String event) throws WaitAndRetryException {
+		if (this.waits.getAndIncrement() == 0) {
+			throw new WaitAndRetryException(100);
+		}
+	}
+
+	@Transition(event="springmvc:/{id}/grouped")
+	public User any(User user, String event) {
+		return user;
+	}
+
+	public int getWaits() {
+		return this.waits.get();
+	}
+}
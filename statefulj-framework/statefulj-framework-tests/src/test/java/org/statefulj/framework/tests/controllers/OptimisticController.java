@@ -0,0 +1,66 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.tests.controllers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.statefulj.framework.core.annotations.StatefulController;
+import org.statefulj.framework.core.annotations.Transition;
+import org.statefulj.framework.tests.model.VersionedUser;
+
+import static org.statefulj.framework.tests.model.VersionedUser.*;
+
+@StatefulController(
+	clazz=VersionedUser.class,
+	startState=ONE_STATE,
+	optimistic=true,
+	retryInterval=1
+)
+public class OptimisticController {
+
+	private final AtomicInteger attempts = new AtomicInteger();
+
+	private volatile Runnable competitor;
+
+	@Transition(from=ONE_STATE, event="login", to=TWO_STATE)
+	public void login(VersionedUser user, String event) {
+		this.attempts.incrementAndGet();
+		Runnable competitor = this.competitor;
+		this.competitor = null;
+		if (competitor != null) {
+			competitor.run();
+		}
+		user.setLogins(user.getLogins() + 1);
+	}
+
+	@Transition(event="springmvc:/{id}/any")
+	public VersionedUser any(VersionedUser user, String event) {
+		return user;
+	}
+
+	public int getAttempts() {
+		return this.attempts.get();
+	}
+
+	/**
+	 * @param competitor run once, by the next login, before the login changes the User
+	 */
+	public void setCompetitor(Runnable competitor) {
+		this.competitor = competitor;
+	}
+}
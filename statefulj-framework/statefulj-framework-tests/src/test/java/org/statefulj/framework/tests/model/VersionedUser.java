@@ -0,0 +1,69 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.framework.tests.model;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.statefulj.persistence.annotations.State;
+
+@Entity
+@Table(name="versioned_users")
+public class VersionedUser {
+
+	// States
+	//
+	public static final String ONE_STATE = "one";
+	public static final String TWO_STATE = "two";
+
+	@Id
+	@GeneratedValue(strategy=GenerationType.SEQUENCE)
+	Long id;
+
+	@Version
+	long version;
+
+	@State
+	String state;
+
+	int logins;
+
+	public Long getId() {
+		return id;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public int getLogins() {
+		return logins;
+	}
+
+	public void setLogins(int logins) {
+		this.logins = logins;
+	}
+}
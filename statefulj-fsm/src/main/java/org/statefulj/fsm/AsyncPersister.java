@@ -0,0 +1,45 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import java.util.concurrent.CompletionStage;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * A {@link Persister} which can update the State without blocking the calling thread.  Used by
+ * {@link FSM#onEventAsync(Object, String, Object...)}; the Action of the Transition runs on the thread
+ * which completes the returned stage
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface AsyncPersister<T> extends Persister<T> {
+
+	/**
+	 * Set the current State to the next State.  As with {@link Persister#setCurrent(Object, State, State)},
+	 * the Stateful Entity is only updated if its persisted State is the expected current State
+	 *
+	 * @param stateful Stateful Entity
+	 * @param current Expected current State of the Stateful Entity
+	 * @param next The value of the updated State
+	 * @return A stage completed once the State is updated, or completed exceptionally with a
+	 * StaleStateException if the persisted State isn't the current State
+	 */
+	CompletionStage<Void> setCurrentAsync(T stateful, State<T> current, State<T> next);
+}
@@ -0,0 +1,46 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import java.util.List;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * A {@link Persister} which can update the State of many Stateful Entities at once.  Used by
+ * {@link FSM#onEvents(java.util.Collection, String, Object...)}; if the FSM's Persister isn't a
+ * BatchPersister, the Stateful Entities are updated one at a time
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface BatchPersister<T> extends Persister<T> {
+
+	/**
+	 * Set the current State of each Stateful Entity to the next State.  As with
+	 * {@link Persister#setCurrent(Object, State, State)}, a Stateful Entity is only updated if its
+	 * persisted State is the expected current State; rather than throwing a StaleStateException,
+	 * a stale Stateful Entity is reported as not updated
+	 *
+	 * @param statefuls The Stateful Entities, all of which are expected to be in the current State
+	 * @param current Expected current State of the Stateful Entities
+	 * @param next The value of the updated State
+	 * @return For each Stateful Entity, in order, whether its State was updated
+	 */
+	boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next);
+}
@@ -0,0 +1,237 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * The EventDispatcher serializes Events per Stateful Entity.  The id of the Stateful Entity is
+ * hashed onto one of a fixed number of "lanes", each drained by a single thread.  Events for the
+ * same Stateful Entity are processed one at a time, in the order in which they were dispatched,
+ * so they never collide in the {@link Persister}; Events for different Stateful Entities are
+ * processed in parallel across the lanes.
+ *
+ * Events without an id, such as those creating a new Stateful Entity, can't collide and are
+ * spread round robin across the lanes.  A task dispatched from a lane's own thread is queued
+ * behind the task that is running, like any other, so callers running on a lane must not wait
+ * on its future; see {@link #isDispatching()}.
+ *
+ * A lane's thread exits once the lane has been idle for a minute, and is started again by the
+ * next dispatch, so an EventDispatcher which is no longer used doesn't pin its threads.
+ * {@link #shutdown()} releases them straight away.  As a bean, the EventDispatcher is shut down
+ * when it's closed by its container
+ *
+ * @author Andrew Hall
+ *
+ */
+public class EventDispatcher implements AutoCloseable {
+
+	private static final long IDLE_TIMEOUT = 60000;  // 60 secs
+
+	private final String name;
+
+	private final Lane[] lanes;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Constructs an EventDispatcher with a lane per available processor
+	 *
+	 * @param name Name of the EventDispatcher, used to name the lane threads
+	 */
+	public EventDispatcher(String name) {
+		this(name, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs an EventDispatcher
+	 *
+	 * @param name Name of the EventDispatcher, used to name the lane threads
+	 * @param lanes Number of lanes
+	 */
+	public EventDispatcher(String name, int lanes) {
+		if (lanes <= 0) {
+			throw new RuntimeException("An EventDispatcher requires at least one lane, lanes=" + lanes);
+		}
+		this.name = name;
+		this.lanes = new Lane[lanes];
+		for (int i = 0; i < lanes; i++) {
+			this.lanes[i] = new Lane(name + "-lane-" + i);
+		}
+	}
+
+	/**
+	 * Dispatch an Event to the FSM on the lane of the Stateful Entity
+	 *
+	 * @param fsm The FSM
+	 * @param id The id of the Stateful Entity, or null if it has none
+	 * @param stateful The Stateful Entity
+	 * @param event The Event
+	 * @param args Optional parameters to pass into the Action
+	 * @return A future completed with the current State once the Event has been processed
+	 */
+	public <T> CompletableFuture<State<T>> dispatch(
+			final FSM<T> fsm,
+			Object id,
+			final T stateful,
+			final String event,
+			final Object... args) {
+		return this.dispatch(id, new Callable<State<T>>() {
+
+			@Override
+			public State<T> call() throws Exception {
+				return fsm.onEvent(stateful, event, args);
+			}
+		});
+	}
+
+	/**
+	 * Run a task on the lane of the Stateful Entity
+	 *
+	 * @param id The id of the Stateful Entity, or null if it has none
+	 * @param task The task
+	 * @return A future completed with the result of the task
+	 */
+	public <V> CompletableFuture<V> dispatch(Object id, final Callable<V> task) {
+		final CompletableFuture<V> future = new CompletableFuture<V>();
+		Lane lane = this.lanes[(id != null) ? this.getLane(id) : this.nextLane()];
+		Runnable runnable = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					future.complete(task.call());
+				} catch(Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		};
+		lane.executor.execute(runnable);
+		return future;
+	}
+
+	/**
+	 * @return Whether the calling thread is one of the lanes of this EventDispatcher.  A task
+	 * running on a lane that waits for a task it dispatched could wait on itself
+	 */
+	public boolean isDispatching() {
+		Thread current = Thread.currentThread();
+		for(Lane lane : this.lanes) {
+			if (lane.thread == current) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param id The id of the Stateful Entity
+	 * @return The lane on which Events for the Stateful Entity are processed
+	 */
+	public int getLane(Object id) {
+		int hash = id.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % this.lanes.length;
+	}
+
+	/**
+	 * @return The number of lanes
+	 */
+	public int getLanes() {
+		return this.lanes.length;
+	}
+
+	/**
+	 * @param lane The lane
+	 * @return The number of Events waiting to be processed on the lane
+	 */
+	public int getBacklog(int lane) {
+		return this.lanes[lane].executor.getQueue().size();
+	}
+
+	/**
+	 * @return The number of Events waiting to be processed on each lane
+	 */
+	public int[] getBacklogs() {
+		int[] backlogs = new int[this.lanes.length];
+		for (int i = 0; i < backlogs.length; i++) {
+			backlogs[i] = this.getBacklog(i);
+		}
+		return backlogs;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Stop accepting Events.  Events already dispatched are still processed
+	 */
+	public void shutdown() {
+		for(Lane lane : this.lanes) {
+			lane.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Shut down the EventDispatcher, see {@link #shutdown()}
+	 */
+	@Override
+	public void close() {
+		this.shutdown();
+	}
+
+	private int nextLane() {
+		return (this.next.getAndIncrement() & Integer.MAX_VALUE) % this.lanes.length;
+	}
+
+	private static class Lane {
+
+		private final ThreadPoolExecutor executor;
+
+		private volatile Thread thread;
+
+		private Lane(final String name) {
+			this.executor = new ThreadPoolExecutor(
+					1,
+					1,
+					IDLE_TIMEOUT,
+					TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, name);
+							thread.setDaemon(true);
+							Lane.this.thread = thread;
+							return thread;
+						}
+					});
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import org.statefulj.fsm.model.impl.TransitionTable;
+
+/**
+ * A handle to an Event, obtained once from {@link FSM#getEventKey(String)} and reused for every
+ * subsequent {@link FSM#onEvent(Object, EventKey, Object...)}.  When the FSM is compiled, the
+ * EventKey carries the ordinal of the Event within the FSM's {@link TransitionTable}, so resolving
+ * the Transition doesn't require hashing or comparing the Event name.
+ *
+ * An EventKey resolved against one FSM may be passed to another FSM; it will then be resolved by name
+ *
+ * @author Andrew Hall
+ *
+ */
+public final class EventKey {
+
+	private final String event;
+
+	private final int ordinal;
+
+	private final int hash;
+
+	private final TransitionTable<?> transitionTable;
+
+	EventKey(String event, int ordinal, TransitionTable<?> transitionTable) {
+		this.event = event;
+		this.ordinal = ordinal;
+		this.hash = event.hashCode();
+		this.transitionTable = transitionTable;
+	}
+
+	/**
+	 * @return The name of the Event
+	 */
+	public String getEvent() {
+		return this.event;
+	}
+
+	/**
+	 * @return The ordinal of the Event within the compiled FSM or -1 if the Event wasn't resolved
+	 */
+	public int getOrdinal() {
+		return this.ordinal;
+	}
+
+	/**
+	 * @return true if the Event was resolved against the specified TransitionTable
+	 */
+	boolean isResolvedBy(TransitionTable<?> transitionTable) {
+		return this.ordinal >= 0 && this.transitionTable == transitionTable;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EventKey)) {
+			return false;
+		}
+		EventKey other = (EventKey)obj;
+		return this.hash == other.hash && this.event.equals(other.event);
+	}
+
+	@Override
+	public String toString() {
+		return this.event;
+	}
+}
@@ -0,0 +1,94 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * The outcome of an Event for one Stateful Entity of a batch passed to
+ * {@link FSM#onEvents(java.util.Collection, String, Object...)}
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> Type of the Stateful Entity
+ */
+public class EventOutcome<T> {
+
+	public enum Status {
+
+		/**
+		 * The Stateful Entity transitioned and the Action, if any, was executed
+		 */
+		TRANSITIONED,
+
+		/**
+		 * The persisted State of the Stateful Entity no longer matched its in-memory State, so
+		 * it wasn't transitioned
+		 */
+		STALE,
+
+		/**
+		 * An Action requested a retry and the Event was retried until the retry attempts were exhausted
+		 */
+		TOO_BUSY,
+
+		/**
+		 * The Stateful Entity is in a blocking State which doesn't handle the Event
+		 */
+		BLOCKED,
+
+		/**
+		 * The current State of the Stateful Entity doesn't handle the Event
+		 */
+		NO_TRANSITION
+	}
+
+	private final T stateful;
+	private final Status status;
+	private final State<T> state;
+
+	public EventOutcome(T stateful, Status status, State<T> state) {
+		this.stateful = stateful;
+		this.status = status;
+		this.state = state;
+	}
+
+	public T getStateful() {
+		return stateful;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return The State of the Stateful Entity once the Event was processed
+	 */
+	public State<T> getState() {
+		return state;
+	}
+
+	public boolean isTransitioned() {
+		return this.status == Status.TRANSITIONED;
+	}
+
+	@Override
+	public String toString() {
+		return "EventOutcome[" + this.status + ", state=" + ((this.state != null) ? this.state.getName() : null) + "]";
+	}
+}
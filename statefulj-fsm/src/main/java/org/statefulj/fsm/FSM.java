@@ -25,12 +25,28 @@ import org.statefulj.fsm.model.StateActionPair;
 import org.statefulj.fsm.model.Transition;
 import org.statefulj.fsm.model.impl.DeterministicTransitionImpl;
 import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.fsm.model.impl.TransitionTable;
+import org.statefulj.fsm.retry.FixedIntervalRetryPolicy;
 import org.statefulj.persistence.memory.MemoryPersisterImpl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The FSM is responsible for the processing the event with the current State and persisting
@@ -45,12 +61,31 @@ public class FSM<T> {
 
 	private static final int DEFAULT_RETRIES = 20;
 	private static final int DEFAULT_RETRY_INTERVAL = 250;  // 250 ms
+	private static final int DEFAULT_STATE_RECHECK_INTERVAL = 5000;  // 5 secs
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private static final RetryPolicy DEFAULT_RETRY_POLICY = new FixedIntervalRetryPolicy();
+
+	// Signals that the Event is blocked and should wait for a StateNotifier
+	//
+	private static final RetryException BLOCKED = new WaitAndRetryException(0, "Blocked", null, false, false);
+
+	// Threads which mustn't wait between attempts
+	//
+	private static final ThreadLocal<Boolean> WAIT_REFUSED = new ThreadLocal<Boolean>();
 
 	private int retryAttempts = DEFAULT_RETRIES;
 	private int retryInterval = DEFAULT_RETRY_INTERVAL;
+	private int stateRecheckInterval = DEFAULT_STATE_RECHECK_INTERVAL;
 
 	private Persister<T> persister;
 	private String name = "FSM";
+	private TransitionTable<T> transitionTable;
+	private WaitAndRetryException waitAndRetry = waitAndRetry(DEFAULT_RETRY_INTERVAL);
+	private ScheduledExecutorService scheduler;
+	private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
+	private StateNotifier<T> stateNotifier;
 
 	/**
 	 * FSM Constructor with the name of the FSM
@@ -93,7 +128,20 @@ public class FSM<T> {
 		this.name = name;
 		this.persister = persister;
 		this.retryAttempts = retryAttempts;
-		this.retryInterval = retryInterval;
+		this.setRetryInterval(retryInterval);
+	}
+
+	/**
+	 * Process event without any parameters.  Equivalent to {@link #onEvent(Object, String, Object...)}
+	 * but doesn't allocate an empty parameter array on every call
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The Event
+	 * @return The current State
+	 * @throws TooBusyException Exception indicating that we've exceeded the number of RetryAttempts
+	 */
+	public State<T> onEvent(T stateful, String event) throws TooBusyException {
+		return this.onEvent(stateful, event, NO_ARGS);
 	}
 
 	/**
@@ -107,61 +155,509 @@ public class FSM<T> {
 	 * @throws TooBusyException Exception indicating that we've exceeded the number of RetryAttempts
 	 */
 	public State<T> onEvent(T stateful, String event, Object ... args) throws TooBusyException {
+		return this.processEvent(stateful, event, null, args);
+	}
+
+	/**
+	 * Process event identified by an {@link EventKey} without any parameters.  Equivalent to
+	 * {@link #onEvent(Object, EventKey, Object...)} but doesn't allocate an empty parameter array on every call
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The EventKey obtained from {@link #getEventKey(String)}
+	 * @return The current State
+	 * @throws TooBusyException Exception indicating that we've exceeded the number of RetryAttempts
+	 */
+	public State<T> onEvent(T stateful, EventKey event) throws TooBusyException {
+		return this.onEvent(stateful, event, NO_ARGS);
+	}
+
+	/**
+	 * Process event identified by an {@link EventKey}.  Will handle all retry attempts.  If attempts exceed
+	 * maximum retries, it will throw a TooBusyException.
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The EventKey obtained from {@link #getEventKey(String)}
+	 * @param args Optional parameters to pass into the Action
+	 * @return The current State
+	 * @throws TooBusyException Exception indicating that we've exceeded the number of RetryAttempts
+	 */
+	public State<T> onEvent(T stateful, EventKey event, Object ... args) throws TooBusyException {
+		return this.processEvent(stateful, event.getEvent(), event, args);
+	}
+
+	/**
+	 * Returns an {@link EventKey} for the Event.  If the FSM is compiled, the Event is resolved up front
+	 * and an unknown Event is rejected; otherwise, the Event will be resolved on each call to
+	 * {@link #onEvent(Object, EventKey, Object...)}
+	 *
+	 * @param event The Event
+	 * @return The EventKey
+	 */
+	public EventKey getEventKey(String event) {
+		if (event == null) {
+			throw new RuntimeException("You must provide an Event");
+		}
+		TransitionTable<T> transitionTable = this.transitionTable;
+		int ordinal = (transitionTable != null) ? transitionTable.getEvents().ordinal(event) : -1;
+		if (ordinal < 0 && transitionTable != null && transitionTable.isComplete()) {
+			throw new RuntimeException("Unknown event, fsm=" + this.name + ", event=" + event);
+		}
+		return new EventKey(event, ordinal, transitionTable);
+	}
 
+	/**
+	 * Process event asynchronously.  The first attempt is made on the calling thread; rather than
+	 * sleeping, a {@link WaitAndRetryException} schedules the next attempt on the
+	 * {@link #getScheduler() scheduler}, so the calling thread is never parked.  If the Persister is an
+	 * {@link AsyncPersister}, the State is updated without blocking, and the Action runs once the update
+	 * completes.  If attempts exceed maximum retries, the returned future completes exceptionally with
+	 * a TooBusyException.
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The Event
+	 * @param args Optional parameters to pass into the Action
+	 * @return A future completed with the current State
+	 */
+	public CompletableFuture<State<T>> onEventAsync(T stateful, String event, Object ... args) {
+		CompletableFuture<State<T>> future = new CompletableFuture<State<T>>();
+		this.processEventAsync(stateful, event, null, args, 0, 0, null, future);
+		return future;
+	}
+
+	/**
+	 * Process event identified by an {@link EventKey} asynchronously.  See {@link #onEventAsync(Object, String, Object...)}
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param event The EventKey obtained from {@link #getEventKey(String)}
+	 * @param args Optional parameters to pass into the Action
+	 * @return A future completed with the current State
+	 */
+	public CompletableFuture<State<T>> onEventAsync(T stateful, EventKey event, Object ... args) {
+		CompletableFuture<State<T>> future = new CompletableFuture<State<T>>();
+		this.processEventAsync(stateful, event.getEvent(), event, args, 0, 0, null, future);
+		return future;
+	}
+
+	/**
+	 * Process the event for each of the Stateful Entities.  Stateful Entities in the same State are
+	 * transitioned together, with a single call to the Persister if it's a {@link BatchPersister}.
+	 * A Stateful Entity which is stale, blocked or has no transition is reported, not retried; if an
+	 * Action requests a retry, that Stateful Entity alone is retried as with {@link #onEvent(Object, String, Object...)},
+	 * and is reported as too busy if the retries are exhausted
+	 *
+	 * @param statefuls The Stateful Entities
+	 * @param event The Event
+	 * @param args Optional parameters to pass into the Actions
+	 * @return The outcome for each Stateful Entity, in iteration order
+	 */
+	public List<EventOutcome<T>> onEvents(Collection<T> statefuls, String event, Object ... args) {
+		return this.processEvents(statefuls, event, null, args);
+	}
+
+	/**
+	 * Process the event identified by an {@link EventKey} for each of the Stateful Entities.
+	 * See {@link #onEvents(Collection, String, Object...)}
+	 *
+	 * @param statefuls The Stateful Entities
+	 * @param event The EventKey obtained from {@link #getEventKey(String)}
+	 * @param args Optional parameters to pass into the Actions
+	 * @return The outcome for each Stateful Entity, in iteration order
+	 */
+	public List<EventOutcome<T>> onEvents(Collection<T> statefuls, EventKey event, Object ... args) {
+		return this.processEvents(statefuls, event.getEvent(), event, args);
+	}
+
+	private State<T> processEvent(T stateful, String event, EventKey key, Object ... args) throws TooBusyException {
+
+		RetryPolicy retryPolicy = this.retryPolicy;
+		BlockedWait blocked = null;
 		int attempts = 0;
+		long wait = 0;
 
-		while(this.retryAttempts == -1 || attempts < this.retryAttempts) {
-			try {
-				State<T> current = this.getCurrentState(stateful);
+		try {
+			while(this.retryAttempts == -1 || attempts < this.retryAttempts) {
+				try {
+					State<T> current = this.attempt(stateful, event, key, args);
+					retryPolicy.onSuccess(attempts);
+					return current;
+				} catch(RetryException re) {
 
-				// Fetch the transition for this event from the current state
-				//
-				Transition<T> transition = this.getTransition(event, current);
+					attempts++;
 
-				// Is there one?
-				//
-				if (transition != null) {
-					current = this.transition(stateful, current, event, transition, args);
-				} else {
+					// Blocked - wait to be notified of a transition out of the blocking State
+					//
+					if (re == BLOCKED) {
+						if (isWaitRefused()) {
+							break;
+						}
+						blocked = this.resubscribe(stateful, blocked);
+						if (blocked != null) {
+							try {
+								blocked.subscription.await(this.retryInterval);
+							} catch(InterruptedException ie) {
+								throw new RuntimeException(ie);
+							}
+						}
+						continue;
+					}
+
+					wait = retryPolicy.getWait(attempts, wait, re);
+					if (wait < 0 || (wait > 0 && isWaitRefused())) {
+						break;
+					}
+
+					logger.warn("{}({})::Retrying event", this.name, stateful);
 
-					if (logger.isDebugEnabled())
-                        logger.debug("{}({})::{}({})->{}/noop",
-                                this.name,
-                                stateful.getClass().getSimpleName(),
-                                current.getName(),
-                                event,
-                                current.getName());
-
-					// If blocking, force a transition to the current state as
-					// it's possible that another thread has moved out of the blocking state.
-					// Either way, we'll retry this event
+					// Wait?
 					//
-					if (current.isBlocking()) {
-						this.setCurrent(stateful, current, current);
-						throw new WaitAndRetryException(this.retryInterval);
+					if (wait > 0) {
+						try {
+							Thread.sleep(wait);
+						} catch(InterruptedException ie) {
+							throw new RuntimeException(ie);
+						}
 					}
 				}
+			}
+		} finally {
+			if (blocked != null) {
+				blocked.subscription.cancel();
+			}
+		}
+		logger.error("{}({})::Unable to process event", this.name, stateful);
+		throw new TooBusyException();
+	}
+
+	private void processEventAsync(
+			final T stateful,
+			final String event,
+			final EventKey key,
+			final Object[] args,
+			int attempts,
+			long wait,
+			BlockedWait blocked,
+			final CompletableFuture<State<T>> future) {
+
+		RetryPolicy retryPolicy = this.retryPolicy;
+		boolean scheduled = false;
+		try {
+			while(this.retryAttempts == -1 || attempts < this.retryAttempts) {
+				try {
+
+					// Without a Transition, fall through to the synchronous attempt
+					//
+					CompletableFuture<State<T>> attempt = (this.persister instanceof AsyncPersister)
+							? this.attemptAsync(stateful, event, key, args)
+							: null;
+					if (attempt != null) {
+						this.completeAsync(stateful, event, key, args, attempts, wait, attempt, future);
+						return;
+					}
+
+					State<T> current = this.attempt(stateful, event, key, args);
+					retryPolicy.onSuccess(attempts);
+					future.complete(current);
+					return;
+				} catch(RetryException re) {
+
+					attempts++;
+
+					// There's no point in waiting if we're out of attempts
+					//
+					if (this.retryAttempts != -1 && attempts >= this.retryAttempts) {
+						break;
+					}
+
+					// Blocked - check back for a notification after the retry interval,
+					// unless we've already been notified
+					//
+					if (re == BLOCKED) {
+						blocked = this.resubscribe(stateful, blocked);
+						if (blocked != null && !blocked.subscription.isNotified()) {
+							this.scheduleAsync(stateful, event, key, args, attempts, wait, blocked, future, this.retryInterval);
+							scheduled = true;
+							return;
+						}
+						continue;
+					}
+
+					wait = retryPolicy.getWait(attempts, wait, re);
+					if (wait < 0) {
+						break;
+					}
+
+					logger.warn("{}({})::Retrying event", this.name, stateful);
+
+					// Rather than sleeping, schedule the next attempt
+					//
+					if (wait > 0) {
+						this.scheduleAsync(stateful, event, key, args, attempts, wait, blocked, future, wait);
+						scheduled = true;
+						return;
+					}
+				}
+			}
+			logger.error("{}({})::Unable to process event", this.name, stateful);
+			future.completeExceptionally(new TooBusyException());
+		} catch(Throwable t) {
+
+			// Never leave the future incomplete, even if the Action or Persister failed
+			//
+			future.completeExceptionally(t);
+		} finally {
+			if (!scheduled && blocked != null) {
+				blocked.subscription.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Attempt the Transition, updating the State through the {@link AsyncPersister}
+	 *
+	 * @return A future completed with the current State, or null if there is no Transition
+	 */
+	private CompletableFuture<State<T>> attemptAsync(
+			final T stateful,
+			final String event,
+			final EventKey key,
+			final Object[] args) throws RetryException {
+		final State<T> current = this.getCurrentState(stateful);
+		final Transition<T> transition = (key != null)
+				? this.getTransition(key, current)
+				: this.getTransition(event, current);
+		if (transition == null) {
+			return null;
+		}
+		final StateActionPair<T> pair = transition.getStateActionPair(stateful, event, args);
+		return this.transitionAsync(stateful, current, transition, pair)
+				.toCompletableFuture()
+				.thenApply(new Function<Void, State<T>>() {
+
+					@Override
+					public State<T> apply(Void ignore) {
+						try {
+							return completeTransition(stateful, current, event, transition, pair, args);
+						} catch(RetryException e) {
+							throw new CompletionException(e);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Once an asynchronous attempt completes, complete the future or retry as
+	 * {@link #processEventAsync} would have
+	 */
+	private void completeAsync(
+			final T stateful,
+			final String event,
+			final EventKey key,
+			final Object[] args,
+			final int attempts,
+			final long wait,
+			CompletableFuture<State<T>> attempt,
+			final CompletableFuture<State<T>> future) {
+		attempt.whenComplete(new BiConsumer<State<T>, Throwable>() {
+
+			@Override
+			public void accept(State<T> current, Throwable t) {
+				Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+				if (cause == null) {
+					retryPolicy.onSuccess(attempts);
+					future.complete(current);
+				} else if (cause instanceof RetryException) {
+					retryAsync(stateful, event, key, args, attempts + 1, wait, (RetryException)cause, future);
+				} else {
+					future.completeExceptionally(cause);
+				}
+			}
+		});
+	}
 
-				return current;
+	private void retryAsync(
+			T stateful,
+			String event,
+			EventKey key,
+			Object[] args,
+			int attempts,
+			long wait,
+			RetryException re,
+			CompletableFuture<State<T>> future) {
+		try {
+			if (this.retryAttempts == -1 || attempts < this.retryAttempts) {
+				wait = this.retryPolicy.getWait(attempts, wait, re);
+				if (wait >= 0) {
+
+					// Even an immediate retry is scheduled, so that retries never recurse on the completing thread
+					//
+					logger.warn("{}({})::Retrying event", this.name, stateful);
+					this.scheduleAsync(stateful, event, key, args, attempts, wait, null, future, wait);
+					return;
+				}
+			}
+			logger.error("{}({})::Unable to process event", this.name, stateful);
+			future.completeExceptionally(new TooBusyException());
+		} catch(Throwable t) {
+			future.completeExceptionally(t);
+		}
+	}
 
-			} catch(RetryException re) {
+	private void scheduleAsync(
+			final T stateful,
+			final String event,
+			final EventKey key,
+			final Object[] args,
+			final int attempts,
+			final long wait,
+			final BlockedWait blocked,
+			final CompletableFuture<State<T>> future,
+			long delay) {
+		this.getScheduler().schedule(
+				new Runnable() {
+					@Override
+					public void run() {
+						processEventAsync(stateful, event, key, args, attempts, wait, blocked, future);
+					}
+				},
+				delay,
+				TimeUnit.MILLISECONDS);
+	}
 
-				logger.warn("{}({})::Retrying event", this.name, stateful);
+	private List<EventOutcome<T>> processEvents(Collection<T> statefuls, String event, EventKey key, Object ... args) {
+		List<EventOutcome<T>> outcomes = new ArrayList<EventOutcome<T>>(Collections.<EventOutcome<T>>nCopies(statefuls.size(), null));
+		Map<Batch<T>, Batch<T>> batches = new LinkedHashMap<Batch<T>, Batch<T>>();
+
+		// Group the Stateful Entities by their current State and the resulting Transition
+		//
+		int index = 0;
+		for (T stateful : statefuls) {
+			State<T> current = this.getCurrentState(stateful);
+			Transition<T> transition = (key != null)
+					? this.getTransition(key, current)
+					: this.getTransition(event, current);
+			if (transition == null) {
+				EventOutcome.Status status = (current.isBlocking())
+						? EventOutcome.Status.BLOCKED
+						: EventOutcome.Status.NO_TRANSITION;
+				outcomes.set(index++, new EventOutcome<T>(stateful, status, current));
+				continue;
+			}
+			try {
+				StateActionPair<T> pair = transition.getStateActionPair(stateful, event, args);
+				Batch.add(batches, current, transition, pair, stateful, index);
+			} catch(RetryException e) {
+				outcomes.set(index, this.retryEvent(stateful, event, key, args));
+			}
+			index++;
+		}
 
-				// Wait?
-				//
-				if (WaitAndRetryException.class.isInstance(re)) {
+		// Transition each group
+		//
+		for (Batch<T> batch : batches.keySet()) {
+			boolean[] updated = this.transition(batch.statefuls, batch.current, batch.transition, batch.pair);
+			for (int i = 0; i < updated.length; i++) {
+				T stateful = batch.statefuls.get(i);
+				EventOutcome<T> outcome;
+				if (!updated[i]) {
+					outcome = new EventOutcome<T>(stateful, EventOutcome.Status.STALE, this.getCurrentState(stateful));
+				} else {
 					try {
-						Thread.sleep(((WaitAndRetryException)re).getWait());
-					} catch(InterruptedException ie) {
-						throw new RuntimeException(ie);
+						State<T> state = this.completeTransition(stateful, batch.current, event, batch.transition, batch.pair, args);
+						outcome = new EventOutcome<T>(stateful, EventOutcome.Status.TRANSITIONED, state);
+					} catch(RetryException e) {
+						outcome = this.retryEvent(stateful, event, key, args);
 					}
 				}
-				attempts++;
+				outcomes.set(batch.indexes.get(i), outcome);
 			}
 		}
-		logger.error("{}({})::Unable to process event", this.name, stateful);
-		throw new TooBusyException();
+		return outcomes;
+	}
+
+	private EventOutcome<T> retryEvent(T stateful, String event, EventKey key, Object ... args) {
+		try {
+			State<T> state = this.processEvent(stateful, event, key, args);
+			return new EventOutcome<T>(stateful, EventOutcome.Status.TRANSITIONED, state);
+		} catch(TooBusyException e) {
+			return new EventOutcome<T>(stateful, EventOutcome.Status.TOO_BUSY, this.getCurrentState(stateful));
+		}
+	}
+
+	/**
+	 * Returns the wait on which the Event waits for the Stateful Entity to leave its blocking State.
+	 * The persisted State is re-checked, by re-writing it, on the first wait and after every notification.
+	 * A transition made by another process, or through another instance of the Stateful Entity, may not
+	 * have been notified, so a wait which timed out re-checks the State too, but no more often than every
+	 * stateRecheckInterval
+	 *
+	 * @return The wait, or null if the State has already changed and the Event should be retried immediately
+	 */
+	private BlockedWait resubscribe(T stateful, BlockedWait blocked) {
+		if (blocked != null
+				&& !blocked.subscription.isNotified()
+				&& System.nanoTime() - blocked.checked < TimeUnit.MILLISECONDS.toNanos(this.stateRecheckInterval)) {
+			return blocked;
+		}
+
+		// Subscribe before checking the persisted State, so that a transition out of the
+		// blocking State after the check can't be missed.  A Subscription that timed out is
+		// still subscribed
+		//
+		if (blocked == null || blocked.subscription.isNotified()) {
+			if (blocked != null) {
+				blocked.subscription.cancel();
+			}
+			blocked = new BlockedWait(this.stateNotifier.subscribe(stateful));
+		}
+		blocked.checked = System.nanoTime();
+		State<T> current = this.getCurrentState(stateful);
+		try {
+			this.setCurrent(stateful, current, current);
+		} catch(StaleStateException e) {
+			blocked.subscription.cancel();
+			return null;
+		}
+		return blocked;
+	}
+
+	private State<T> attempt(T stateful, String event, EventKey key, Object ... args) throws RetryException {
+		State<T> current = this.getCurrentState(stateful);
+
+		// Fetch the transition for this event from the current state
+		//
+		Transition<T> transition = (key != null)
+				? this.getTransition(key, current)
+				: this.getTransition(event, current);
+
+		// Is there one?
+		//
+		if (transition != null) {
+			current = this.transition(stateful, current, event, transition, args);
+		} else {
+
+			if (logger.isDebugEnabled())
+                logger.debug("{}({})::{}({})->{}/noop",
+                        this.name,
+                        stateful.getClass().getSimpleName(),
+                        current.getName(),
+                        event,
+                        current.getName());
+
+			// If blocking, force a transition to the current state as
+			// it's possible that another thread has moved out of the blocking state.
+			// Either way, we'll retry this event.  With a StateNotifier, the
+			// State is only forced once we've been notified
+			//
+			if (current.isBlocking()) {
+				if (this.stateNotifier != null) {
+					throw BLOCKED;
+				}
+				this.setCurrent(stateful, current, current);
+				throw this.waitAndRetry;
+			}
+		}
+
+		return current;
 	}
 
 	public int getRetryAttempts() {
@@ -178,6 +674,22 @@ public class FSM<T> {
 
 	public void setRetryInterval(int retryInterval) {
 		this.retryInterval = retryInterval;
+		this.waitAndRetry = waitAndRetry(retryInterval);
+	}
+
+	public int getStateRecheckInterval() {
+		return stateRecheckInterval;
+	}
+
+	/**
+	 * Set how often, in milliseconds, an Event waiting on a {@link StateNotifier} re-checks the persisted
+	 * State without having been notified.  This is the fallback for transitions which weren't notified,
+	 * and should be much longer than the retryInterval, as each re-check writes the State
+	 *
+	 * @param stateRecheckInterval Time between re-checks in milliseconds
+	 */
+	public void setStateRecheckInterval(int stateRecheckInterval) {
+		this.stateRecheckInterval = stateRecheckInterval;
 	}
 
 	public Persister<T> getPersister() {
@@ -196,11 +708,193 @@ public class FSM<T> {
 		this.name = name;
 	}
 
+	public TransitionTable<T> getTransitionTable() {
+		return transitionTable;
+	}
+
+	/**
+	 * Set a compiled {@link org.statefulj.fsm.model.impl.TransitionTable}.  When set, Transitions
+	 * are resolved from the table instead of the current State
+	 *
+	 * @param transitionTable The compiled Transitions, or null to resolve Transitions from the State
+	 */
+	public void setTransitionTable(TransitionTable<T> transitionTable) {
+		this.transitionTable = transitionTable;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Set the {@link RetryPolicy} which decides the wait between attempts.  The number of attempts
+	 * remains capped by retryAttempts
+	 *
+	 * @param retryPolicy The RetryPolicy, or null to use the default {@link FixedIntervalRetryPolicy}
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = (retryPolicy != null) ? retryPolicy : DEFAULT_RETRY_POLICY;
+	}
+
+	public StateNotifier<T> getStateNotifier() {
+		return stateNotifier;
+	}
+
+	/**
+	 * Set the {@link StateNotifier}.  When set, an Event blocked by a blocking State waits to be
+	 * notified that the State has changed instead of re-writing the State on every retry
+	 *
+	 * @param stateNotifier The StateNotifier, or null to re-write the State on every retry
+	 */
+	public void setStateNotifier(StateNotifier<T> stateNotifier) {
+		this.stateNotifier = stateNotifier;
+	}
+
+	/**
+	 * @return The scheduler on which {@link #onEventAsync(Object, String, Object...)} schedules retries.
+	 * If one hasn't been set, a scheduler shared by all FSMs is returned
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return (this.scheduler != null) ? this.scheduler : SharedScheduler.INSTANCE;
+	}
+
+	/**
+	 * Set the scheduler on which {@link #onEventAsync(Object, String, Object...)} schedules retries.
+	 * The retried attempt, including the Action, runs on the scheduler's thread
+	 *
+	 * @param scheduler The scheduler, or null to use the scheduler shared by all FSMs
+	 */
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Refuse, on the calling thread, to wait between attempts to process an Event.  An Event which is
+	 * blocked, or which would wait before it's retried, throws a TooBusyException instead.  For a thread
+	 * which holds resources on behalf of others, such as a transaction shared by several Events, and
+	 * which must not hold them while waiting
+	 *
+	 * @param refused whether the calling thread refuses to wait
+	 */
+	public static void setWaitRefused(boolean refused) {
+		if (refused) {
+			WAIT_REFUSED.set(Boolean.TRUE);
+		} else {
+			WAIT_REFUSED.remove();
+		}
+	}
+
+	/**
+	 * @return whether the calling thread refuses to wait between attempts
+	 */
+	public static boolean isWaitRefused() {
+		return WAIT_REFUSED.get() != null;
+	}
+
 	public State<T> getCurrentState(T obj) {
 		return this.persister.getCurrent(obj);
 	}
 
 
+	/**
+	 * Build the shared, immutable and stackless exception that signals a retry after waiting
+	 */
+	private static WaitAndRetryException waitAndRetry(int wait) {
+		return new WaitAndRetryException(wait, "Wait and retry", null, false, false);
+	}
+
+	/**
+	 * Stateful Entities of a call to onEvents which share the same current State, Transition, next State
+	 * and Action.  Equality is by identity of these
+	 */
+	private static class Batch<T> {
+
+		private final State<T> current;
+		private final Transition<T> transition;
+		private final StateActionPair<T> pair;
+		private final List<T> statefuls = new ArrayList<T>();
+		private final List<Integer> indexes = new ArrayList<Integer>();
+
+		private Batch(State<T> current, Transition<T> transition, StateActionPair<T> pair) {
+			this.current = current;
+			this.transition = transition;
+			this.pair = pair;
+		}
+
+		private static <T> void add(
+				Map<Batch<T>, Batch<T>> batches,
+				State<T> current,
+				Transition<T> transition,
+				StateActionPair<T> pair,
+				T stateful,
+				int index) {
+			Batch<T> batch = new Batch<T>(current, transition, pair);
+			Batch<T> existing = batches.get(batch);
+			if (existing != null) {
+				batch = existing;
+			} else {
+				batches.put(batch, batch);
+			}
+			batch.statefuls.add(stateful);
+			batch.indexes.add(index);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = System.identityHashCode(this.current);
+			hash = 31 * hash + System.identityHashCode(this.transition);
+			hash = 31 * hash + System.identityHashCode(this.pair.getState());
+			return 31 * hash + System.identityHashCode(this.pair.getAction());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Batch)) {
+				return false;
+			}
+			Batch<?> batch = (Batch<?>)obj;
+			return this.current == batch.current
+					&& this.transition == batch.transition
+					&& this.pair.getState() == batch.pair.getState()
+					&& this.pair.getAction() == batch.pair.getAction();
+		}
+	}
+
+	/**
+	 * Lazily creates the scheduler shared by all FSMs.  Its threads are daemons so that it
+	 * never prevents the JVM from exiting
+	 */
+	/**
+	 * The Subscription of an Event waiting on a blocking State, and when the persisted State was last checked
+	 */
+	private static class BlockedWait {
+
+		private final StateNotifier.Subscription subscription;
+
+		private long checked;
+
+		private BlockedWait(StateNotifier.Subscription subscription) {
+			this.subscription = subscription;
+		}
+	}
+
+	private static class SharedScheduler {
+
+		private static final ScheduledExecutorService INSTANCE = Executors.newScheduledThreadPool(
+				Runtime.getRuntime().availableProcessors(),
+				new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "statefulj-fsm-retry-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
 	/**
 	 * Fluid FSM builder
 	 *
@@ -454,6 +1148,11 @@ public class FSM<T> {
 
 		private int retryAttempts = DEFAULT_RETRIES;
 		private int retryInterval = DEFAULT_RETRY_INTERVAL;
+		private int stateRecheckInterval = DEFAULT_STATE_RECHECK_INTERVAL;
+		private boolean compiled = false;
+		private ScheduledExecutorService scheduler;
+		private RetryPolicy retryPolicy;
+		private StateNotifier<T> stateNotifier;
 
 		private Persister<T> persister;
 		private String name = "FSM";
@@ -512,6 +1211,62 @@ public class FSM<T> {
 			return this;
 		}
 
+		/**
+		 * Whether to compile the States and Transitions into a
+		 * {@link org.statefulj.fsm.model.impl.TransitionTable} when the FSM is built.  Once compiled,
+		 * changes to the Transitions of a State are not visible to the FSM
+		 * @param compiled
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setCompiled(boolean compiled) {
+			this.compiled = compiled;
+			return this;
+		}
+
+		/**
+		 * Sets the {@link RetryPolicy} for the FSM.  If not specified, a {@link FixedIntervalRetryPolicy}
+		 * is used
+		 * @param retryPolicy
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setRetryPolicy(RetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+
+		/**
+		 * Sets the {@link StateNotifier} for the FSM.  If not specified, Events blocked
+		 * by a blocking State re-write the State on every retry
+		 * @param stateNotifier
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setStateNotifier(StateNotifier<T> stateNotifier) {
+			this.stateNotifier = stateNotifier;
+			return this;
+		}
+
+		/**
+		 * Sets how often an Event waiting on the {@link StateNotifier} re-checks the persisted State
+		 * without having been notified
+		 * @param stateRecheckInterval
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setStateRecheckInterval(int stateRecheckInterval) {
+			this.stateRecheckInterval = stateRecheckInterval;
+			return this;
+		}
+
+		/**
+		 * Sets the scheduler on which asynchronous Events are retried.  If not specified, a
+		 * scheduler shared by all FSMs is used
+		 * @param scheduler
+		 * @return FSMBuilder
+		 */
+		public FSMBuilder<T> setScheduler(ScheduledExecutorService scheduler) {
+			this.scheduler = scheduler;
+			return this;
+		}
+
 		/**
 		 * Add a specified State
 		 * @param state State to add
@@ -588,18 +1343,44 @@ public class FSM<T> {
 			this.persister.setStates(this.states.values());
 			this.persister.setStartState(startState);
 
-			return new FSM<T>(this.name, this.persister, this.retryAttempts, this.retryInterval);
+			FSM<T> fsm = new FSM<T>(this.name, this.persister, this.retryAttempts, this.retryInterval);
+			fsm.setScheduler(this.scheduler);
+			fsm.setRetryPolicy(this.retryPolicy);
+			fsm.setStateNotifier(this.stateNotifier);
+			fsm.setStateRecheckInterval(this.stateRecheckInterval);
+			if (this.compiled) {
+				fsm.setTransitionTable(new TransitionTable<T>(this.states.values()));
+			}
+			return fsm;
 		}
 	}
 
 
 	protected Transition<T> getTransition(String event, State<T> current) {
-		return current.getTransition(event);
+		return (this.transitionTable != null)
+				? this.transitionTable.getTransition(event, current)
+				: current.getTransition(event);
+	}
+
+	protected Transition<T> getTransition(EventKey event, State<T> current) {
+		TransitionTable<T> transitionTable = this.transitionTable;
+		return (event.isResolvedBy(transitionTable))
+				? transitionTable.getTransition(event.getOrdinal(), current)
+				: this.getTransition(event.getEvent(), current);
 	}
 
 	protected State<T> transition(T stateful, State<T> current, String event, Transition<T> transition, Object... args) throws RetryException {
 		StateActionPair<T> pair = transition.getStateActionPair(stateful, event, args);
 		setCurrent(stateful, current, pair.getState());
+		return completeTransition(stateful, current, event, transition, pair, args);
+	}
+
+	/**
+	 * Complete a Transition once the State has been set, by executing the Action
+	 *
+	 * @return The current State
+	 */
+	protected State<T> completeTransition(T stateful, State<T> current, String event, Transition<T> transition, StateActionPair<T> pair, Object... args) throws RetryException {
 		executeAction(
 				pair.getAction(),
 				stateful,
@@ -612,6 +1393,76 @@ public class FSM<T> {
 
 	protected void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
 		persister.setCurrent(stateful, current, next);
+		this.notifyTransition(stateful, current, next);
+	}
+
+	private void notifyTransition(T stateful, State<T> current, State<T> next) {
+		if (this.stateNotifier != null && current.isBlocking() && current != next) {
+			this.stateNotifier.notify(stateful, current, next);
+		}
+	}
+
+	/**
+	 * Persist the Transition of a Stateful Entity through the {@link AsyncPersister}, before its Action is
+	 * executed.  This is the asynchronous counterpart of the update made by
+	 * {@link #transition(Object, State, String, Transition, Object...)}, so a subclass which overrides when
+	 * that persists the State should override this to match
+	 *
+	 * @return A stage completed once the State is persisted, or completed exceptionally with a RetryException
+	 */
+	protected CompletionStage<Void> transitionAsync(final T stateful, final State<T> current, Transition<T> transition, final StateActionPair<T> pair) {
+		return ((AsyncPersister<T>)this.persister)
+				.setCurrentAsync(stateful, current, pair.getState())
+				.thenRun(new Runnable() {
+
+					@Override
+					public void run() {
+						notifyTransition(stateful, current, pair.getState());
+					}
+				});
+	}
+
+	/**
+	 * Persist the Transition of a batch of Stateful Entities, which share the current State, Transition
+	 * and resulting State, before their Actions are executed.  This is the batch counterpart of the
+	 * update made by {@link #transition(Object, State, String, Transition, Object...)}, so a subclass
+	 * which overrides when that persists the State should override this to match
+	 *
+	 * @return For each Stateful Entity, in order, whether it may complete the Transition
+	 */
+	protected boolean[] transition(List<T> statefuls, State<T> current, Transition<T> transition, StateActionPair<T> pair) {
+		return this.setCurrent(statefuls, current, pair.getState());
+	}
+
+	/**
+	 * Set the current State of a batch of Stateful Entities, with a single call if the Persister
+	 * is a {@link BatchPersister}
+	 *
+	 * @return For each Stateful Entity, in order, whether its State was updated
+	 */
+	protected boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+		boolean[] updated;
+		if (persister instanceof BatchPersister) {
+			updated = ((BatchPersister<T>)persister).setCurrent(statefuls, current, next);
+		} else {
+			updated = new boolean[statefuls.size()];
+			for (int i = 0; i < updated.length; i++) {
+				try {
+					persister.setCurrent(statefuls.get(i), current, next);
+					updated[i] = true;
+				} catch(StaleStateException e) {
+					updated[i] = false;
+				}
+			}
+		}
+		if (this.stateNotifier != null && current.isBlocking() && current != next) {
+			for (int i = 0; i < updated.length; i++) {
+				if (updated[i]) {
+					this.stateNotifier.notify(statefuls.get(i), current, next);
+				}
+			}
+		}
+		return updated;
 	}
 
 	protected void executeAction(
@@ -34,4 +34,8 @@ public class RetryException extends Exception {
 	public RetryException(String msg) {
 		super(msg);
 	}
+
+	protected RetryException(String msg, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(msg, cause, enableSuppression, writableStackTrace);
+	}
 }
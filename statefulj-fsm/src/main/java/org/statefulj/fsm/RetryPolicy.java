@@ -0,0 +1,49 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+/**
+ * A RetryPolicy decides how long the FSM waits before retrying an Event that failed with a
+ * {@link RetryException}, and whether it should be retried at all.  The number of attempts is
+ * capped by the FSM's retryAttempts; the RetryPolicy may give up sooner.
+ *
+ * A RetryPolicy belongs to a single FSM and is invoked concurrently by every thread processing
+ * an Event for that FSM, so implementations must be thread safe
+ *
+ * @author Andrew Hall
+ *
+ */
+public interface RetryPolicy {
+
+	/**
+	 * Returns how long to wait before the next attempt
+	 *
+	 * @param attempts The number of failed attempts for this Event, including this one
+	 * @param previousWait The wait, in milliseconds, before the failed attempt.  0 if it was the first attempt
+	 * @param retryException The reason for the failure
+	 * @return The wait in milliseconds, 0 to retry immediately or a negative value to abandon the Event
+	 */
+	long getWait(int attempts, long previousWait, RetryException retryException);
+
+	/**
+	 * Notifies the RetryPolicy that an Event was processed
+	 *
+	 * @param attempts The number of failed attempts before the Event was processed
+	 */
+	void onSuccess(int attempts);
+}
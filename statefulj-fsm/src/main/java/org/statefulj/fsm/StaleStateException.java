@@ -35,4 +35,12 @@ public class StaleStateException extends RetryException {
 	public StaleStateException(String err) {
 		super(err);
 	}
+
+	/**
+	 * Use with enableSuppression and writableStackTrace set to false to build an immutable,
+	 * stackless instance that can be preallocated and shared across threads
+	 */
+	public StaleStateException(String err, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(err, cause, enableSuppression, writableStackTrace);
+	}
 }
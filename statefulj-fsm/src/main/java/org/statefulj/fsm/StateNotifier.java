@@ -0,0 +1,78 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import org.statefulj.fsm.model.State;
+
+/**
+ * A StateNotifier wakes Events waiting on a blocking State when the Stateful Entity transitions
+ * out of it.  Without a StateNotifier, a waiting Event re-writes the blocking State on every retry
+ * to discover whether the State has changed; with one, it only re-checks once notified.
+ *
+ * The FSM subscribes before checking the persisted State, so a notification published between the
+ * check and the wait is not lost.  A StateNotifier that spans processes must deliver notifications
+ * published on any node to the subscribers on every node
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> The class of the Stateful Entity
+ */
+public interface StateNotifier<T> {
+
+	/**
+	 * Register interest in the State of a Stateful Entity changing
+	 *
+	 * @param stateful The Stateful Entity
+	 * @return The Subscription, which must be cancelled once the Event is done waiting
+	 */
+	Subscription subscribe(T stateful);
+
+	/**
+	 * Publish that the Stateful Entity transitioned out of a blocking State
+	 *
+	 * @param stateful The Stateful Entity
+	 * @param from The blocking State
+	 * @param to The new State
+	 */
+	void notify(T stateful, State<T> from, State<T> to);
+
+	/**
+	 * Interest in the State of a single Stateful Entity
+	 */
+	interface Subscription {
+
+		/**
+		 * @return true if a notification has been received since the Subscription was made
+		 */
+		boolean isNotified();
+
+		/**
+		 * Wait for a notification
+		 *
+		 * @param timeout Maximum time to wait in milliseconds
+		 * @return true if notified, false if the wait timed out
+		 * @throws InterruptedException
+		 */
+		boolean await(long timeout) throws InterruptedException;
+
+		/**
+		 * Stop receiving notifications
+		 */
+		void cancel();
+	}
+}
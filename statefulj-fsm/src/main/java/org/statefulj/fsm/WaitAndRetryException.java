@@ -33,6 +33,15 @@ public class WaitAndRetryException extends RetryException {
 		this.wait = wait;
 	}
 
+	/**
+	 * Use with enableSuppression and writableStackTrace set to false to build an immutable,
+	 * stackless instance that can be preallocated and shared across threads
+	 */
+	public WaitAndRetryException(int wait, String msg, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(msg, cause, enableSuppression, writableStackTrace);
+		this.wait = wait;
+	}
+
 	public int getWait() {
 		return wait;
 	}
@@ -40,5 +49,4 @@ public class WaitAndRetryException extends RetryException {
 	public void setWait(int wait) {
 		this.wait = wait;
 	}
-
 }
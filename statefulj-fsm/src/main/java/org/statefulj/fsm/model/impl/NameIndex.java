@@ -0,0 +1,159 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.model.impl;
+
+import java.util.List;
+
+/**
+ * An immutable index of names (States or Events) to ordinals and values.  Names are assigned
+ * ordinals 0..n-1 in the order they are provided.  The index is backed by an open addressed table
+ * whose hash multiplier is chosen at construction time so that no two names collide; so a
+ * lookup is typically a single probe and a single String comparison.
+ *
+ * @author Andrew Hall
+ *
+ * @param <V> Type of the value associated with each name
+ */
+public class NameIndex<V> {
+
+	private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+	private static final int MAX_SEEDS = 64;
+
+	private final String[] names;
+
+	private final Object[] values;
+
+	private final int[] slots; // ordinal + 1, 0 indicates an empty slot
+
+	private final int mask;
+
+	private final int shift;
+
+	private final int multiplier;
+
+	/**
+	 * Build the index
+	 *
+	 * @param names Names to index.  The position of the name is its ordinal
+	 * @param values Values associated with each name, in the same order as names
+	 */
+	public NameIndex(List<String> names, List<V> values) {
+		if (names.size() != values.size()) {
+			throw new IllegalArgumentException("The number of names and values must be equal");
+		}
+		this.names = names.toArray(new String[names.size()]);
+		this.values = values.toArray();
+
+		// Start with a load factor of at most 1/2 and grow the table until
+		// we find a multiplier without collisions.  Distinct names with identical
+		// hash codes can never be separated, so give up after a few doublings and rely on probing
+		//
+		int bits = 1;
+		while ((1 << bits) < this.names.length * 2) {
+			bits++;
+		}
+		int maxBits = bits + 3;
+
+		int[] slots = null;
+		int multiplier = GOLDEN_RATIO;
+		for (; slots == null && bits <= maxBits; bits++) {
+			for (int seed = 0; slots == null && seed < MAX_SEEDS; seed++) {
+				multiplier = GOLDEN_RATIO + (seed << 1);
+				slots = fill(bits, multiplier, false);
+			}
+		}
+		if (slots == null) {
+			bits = maxBits;
+			multiplier = GOLDEN_RATIO;
+			slots = fill(bits, multiplier, true);
+		} else {
+			bits--;
+		}
+
+		this.slots = slots;
+		this.mask = (1 << bits) - 1;
+		this.shift = 32 - bits;
+		this.multiplier = multiplier;
+	}
+
+	/**
+	 * Returns the ordinal of the name
+	 *
+	 * @param name The name
+	 * @return ordinal of the name or -1 if the name isn't indexed
+	 */
+	public int ordinal(String name) {
+		int i = (name.hashCode() * this.multiplier) >>> this.shift;
+		int slot;
+		while ((slot = this.slots[i]) != 0) {
+			if (this.names[slot - 1].equals(name)) {
+				return slot - 1;
+			}
+			i = (i + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the value associated with the name
+	 *
+	 * @param name The name
+	 * @return the value or null if the name isn't indexed
+	 */
+	public V get(String name) {
+		int ordinal = this.ordinal(name);
+		return (ordinal < 0) ? null : this.get(ordinal);
+	}
+
+	/**
+	 * Returns the value associated with the ordinal
+	 *
+	 * @param ordinal The ordinal
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int ordinal) {
+		return (V)this.values[ordinal];
+	}
+
+	public String getName(int ordinal) {
+		return this.names[ordinal];
+	}
+
+	public int size() {
+		return this.names.length;
+	}
+
+	private int[] fill(int bits, int multiplier, boolean probe) {
+		int[] slots = new int[1 << bits];
+		int mask = slots.length - 1;
+		int shift = 32 - bits;
+		for (int ordinal = 0; ordinal < this.names.length; ordinal++) {
+			int i = (this.names[ordinal].hashCode() * multiplier) >>> shift;
+			while (slots[i] != 0) {
+				if (!probe) {
+					return null;
+				}
+				i = (i + 1) & mask;
+			}
+			slots[i] = ordinal + 1;
+		}
+		return slots;
+	}
+}
@@ -0,0 +1,149 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.Transition;
+
+/**
+ * A "compiled" snapshot of the Transitions of a set of States.  States and Events are
+ * assigned ordinals and the Transitions are laid out in a dense State x Event array, so
+ * resolving a Transition is two {@link NameIndex} probes and an array lookup.
+ *
+ * The table is a snapshot - Transitions added or removed from a State after the table has been
+ * built are not reflected.  Only {@link StateImpl} States can be enumerated; for any other State
+ * implementation, the table delegates to {@link State#getTransition(String)}
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> The class of the Stateful Entity
+ */
+public class TransitionTable<T> {
+
+	private final NameIndex<State<T>> states;
+
+	private final NameIndex<String> events;
+
+	private final Transition<T>[] transitions;
+
+	private final boolean[] compiled;
+
+	private final boolean complete;
+
+	@SuppressWarnings("unchecked")
+	public TransitionTable(Collection<State<T>> states) {
+
+		// Assign ordinals to the States and collect all the Events
+		//
+		List<String> stateNames = new ArrayList<String>(states.size());
+		List<State<T>> stateList = new ArrayList<State<T>>(states.size());
+		Set<String> eventNames = new LinkedHashSet<String>();
+		for(State<T> state : states) {
+			stateNames.add(state.getName());
+			stateList.add(state);
+			if (state instanceof StateImpl) {
+				eventNames.addAll(((StateImpl<T>)state).getTransitions().keySet());
+			}
+		}
+		List<String> eventList = new ArrayList<String>(eventNames);
+
+		this.states = new NameIndex<State<T>>(stateNames, stateList);
+		this.events = new NameIndex<String>(eventList, eventList);
+		@SuppressWarnings("unchecked")
+		Transition<T>[] transitions = (Transition<T>[])new Transition<?>[this.states.size() * this.events.size()];
+		this.transitions = transitions;
+		this.compiled = new boolean[this.states.size()];
+
+		// Lay out the Transitions
+		//
+		boolean complete = true;
+		for (int s = 0; s < stateList.size(); s++) {
+			State<T> state = stateList.get(s);
+			if (state instanceof StateImpl) {
+				this.compiled[s] = true;
+				for(Map.Entry<String, Transition<T>> entry : ((StateImpl<T>)state).getTransitions().entrySet()) {
+					this.transitions[s * this.events.size() + this.events.ordinal(entry.getKey())] = entry.getValue();
+				}
+			} else {
+				complete = false;
+			}
+		}
+		this.complete = complete;
+	}
+
+	/**
+	 * Returns the Transition for an Event from the current State
+	 *
+	 * @param event The Event
+	 * @param current The current State
+	 * @return The Transition or null if there is no Transition for this Event
+	 */
+	public Transition<T> getTransition(String event, State<T> current) {
+		int state = this.states.ordinal(current.getName());
+		if (state < 0 || !this.compiled[state] || this.states.get(state) != current) {
+			return current.getTransition(event);
+		}
+		int ordinal = this.events.ordinal(event);
+		return (ordinal < 0) ? null : this.transitions[state * this.events.size() + ordinal];
+	}
+
+	/**
+	 * Returns the Transition for an Event, identified by its ordinal in {@link #getEvents()},
+	 * from the current State
+	 *
+	 * @param event The ordinal of the Event
+	 * @param current The current State
+	 * @return The Transition or null if there is no Transition for this Event
+	 */
+	public Transition<T> getTransition(int event, State<T> current) {
+		int state = this.states.ordinal(current.getName());
+		if (state < 0 || !this.compiled[state] || this.states.get(state) != current) {
+			return current.getTransition(this.events.getName(event));
+		}
+		return this.transitions[state * this.events.size() + event];
+	}
+
+	/**
+	 * @return true if every State was compiled, in which case {@link #getEvents()} holds every
+	 * Event known to the FSM
+	 */
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * @return Index of the States
+	 */
+	public NameIndex<State<T>> getStates() {
+		return this.states;
+	}
+
+	/**
+	 * @return Index of the Events
+	 */
+	public NameIndex<String> getEvents() {
+		return this.events;
+	}
+}
@@ -30,7 +30,7 @@ import org.statefulj.fsm.model.Action;
  */
 public class WaitAndRetryActionImpl<T> implements Action<T> {
 	
-	private int wait = 0;
+	private final WaitAndRetryException waitAndRetry;
 
 	/**
 	 * Constructor with a wait time expressed in milliseconds
@@ -38,12 +38,12 @@ public class WaitAndRetryActionImpl<T> implements Action<T> {
 	 * @param wait time in milliseconds
 	 */
 	public WaitAndRetryActionImpl(int wait) {
-		this.wait = wait;
+		this.waitAndRetry = new WaitAndRetryException(wait, "Wait and retry", null, false, false);
 	}
 	
 	@Override
 	public void execute(T obj, String event, Object... args) throws RetryException {
-		throw new WaitAndRetryException(this.wait);
+		throw this.waitAndRetry;
 	}
 
 }
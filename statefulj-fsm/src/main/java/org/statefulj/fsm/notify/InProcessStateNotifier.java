@@ -0,0 +1,217 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.notify;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.statefulj.common.utils.ReflectionUtils;
+import org.statefulj.fsm.StateNotifier;
+import org.statefulj.fsm.model.State;
+
+/**
+ * A {@link StateNotifier} for a single process.  Subscriptions are keyed by the id of the Stateful Entity,
+ * so that separately loaded instances of the same Entity share their notifications.  The id is the value
+ * of the field bearing the id annotation; by default, that's any annotation named "Id", such as
+ * javax.persistence.Id or org.springframework.data.annotation.Id.  An Entity without an id field, or
+ * whose id is null, is keyed by the Entity itself.
+ *
+ * To span processes, extend {@link #notify(Object, State, State)} to also broadcast the key, and call
+ * {@link #wake(Object)} with each key received from the other processes
+ *
+ * @author Andrew Hall
+ *
+ * @param <T> The class of the Stateful Entity
+ */
+public class InProcessStateNotifier<T> implements StateNotifier<T> {
+
+	private static final int STRIPES = 64;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private final Class<? extends Annotation> idAnnotation;
+
+	private final ClassValue<Field> idFields = new ClassValue<Field>() {
+
+		@Override
+		protected Field computeValue(Class<?> clazz) {
+			Field field = ReflectionUtils.copy(findIdField(clazz));
+			if (field != null) {
+				field.setAccessible(true);
+			}
+			return field;
+		}
+	};
+
+	/**
+	 * Key the Subscriptions by the id of the Stateful Entity, as marked by any annotation named "Id"
+	 */
+	public InProcessStateNotifier() {
+		this(null);
+	}
+
+	/**
+	 * Key the Subscriptions by the id of the Stateful Entity
+	 *
+	 * @param idAnnotation The annotation of the id field, or null for any annotation named "Id"
+	 */
+	public InProcessStateNotifier(Class<? extends Annotation> idAnnotation) {
+		this.idAnnotation = idAnnotation;
+		for (int i = 0; i < STRIPES; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	@Override
+	public Subscription subscribe(T stateful) {
+		Object key = this.getKey(stateful);
+		Stripe stripe = this.getStripe(key);
+		SubscriptionImpl subscription = new SubscriptionImpl(key, stripe);
+		synchronized(stripe) {
+			List<SubscriptionImpl> subscriptions = stripe.subscriptions.get(key);
+			if (subscriptions == null) {
+				subscriptions = new ArrayList<SubscriptionImpl>(2);
+				stripe.subscriptions.put(key, subscriptions);
+			}
+			subscriptions.add(subscription);
+		}
+		return subscription;
+	}
+
+	@Override
+	public void notify(T stateful, State<T> from, State<T> to) {
+		this.wake(this.getKey(stateful));
+	}
+
+	/**
+	 * Wake every Subscription for the key
+	 *
+	 * @param key The key of the Stateful Entity
+	 */
+	public void wake(Object key) {
+		List<SubscriptionImpl> subscriptions;
+		Stripe stripe = this.getStripe(key);
+		synchronized(stripe) {
+			subscriptions = stripe.subscriptions.remove(key);
+		}
+		if (subscriptions != null) {
+			for(SubscriptionImpl subscription : subscriptions) {
+				subscription.latch.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Returns the key of the Stateful Entity
+	 *
+	 * @param stateful The Stateful Entity
+	 * @return The key
+	 */
+	protected Object getKey(T stateful) {
+		Field field = this.idFields.get(stateful.getClass());
+		if (field == null) {
+			return stateful;
+		}
+		try {
+			Object id = field.get(stateful);
+			return (id != null) ? id : stateful;
+		} catch(IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the id field of the class
+	 *
+	 * @param clazz The class of the Stateful Entity
+	 * @return The id field, or null if there isn't one
+	 */
+	protected Field findIdField(Class<?> clazz) {
+		if (this.idAnnotation != null) {
+			Field field = ReflectionUtils.getReferencedField(clazz, this.idAnnotation);
+			if (field == null) {
+				throw new RuntimeException("Unable to locate an id field for " + clazz.getName());
+			}
+			return field;
+		}
+		for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				for (Annotation annotation : field.getAnnotations()) {
+					if ("Id".equals(annotation.annotationType().getSimpleName())) {
+						return field;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private Stripe getStripe(Object key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return this.stripes[hash & (STRIPES - 1)];
+	}
+
+	private static class Stripe {
+
+		private final Map<Object, List<SubscriptionImpl>> subscriptions = new HashMap<Object, List<SubscriptionImpl>>();
+	}
+
+	private static class SubscriptionImpl implements Subscription {
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		private final Object key;
+
+		private final Stripe stripe;
+
+		private SubscriptionImpl(Object key, Stripe stripe) {
+			this.key = key;
+			this.stripe = stripe;
+		}
+
+		@Override
+		public boolean isNotified() {
+			return this.latch.getCount() == 0;
+		}
+
+		@Override
+		public boolean await(long timeout) throws InterruptedException {
+			return this.latch.await(timeout, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void cancel() {
+			synchronized(this.stripe) {
+				List<SubscriptionImpl> subscriptions = this.stripe.subscriptions.get(this.key);
+				if (subscriptions != null) {
+					subscriptions.remove(this);
+					if (subscriptions.isEmpty()) {
+						this.stripe.subscriptions.remove(this.key);
+					}
+				}
+			}
+		}
+	}
+}
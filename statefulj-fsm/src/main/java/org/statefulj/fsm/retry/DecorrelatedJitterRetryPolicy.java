@@ -0,0 +1,70 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+
+/**
+ * Exponential backoff with "decorrelated jitter": each wait is chosen at random between the base
+ * and three times the previous wait, never exceeding the cap.  Threads that collided on one attempt
+ * are unlikely to wake together for the next
+ *
+ * @author Andrew Hall
+ *
+ */
+public class DecorrelatedJitterRetryPolicy implements RetryPolicy {
+
+	private final long base;
+
+	private final long cap;
+
+	/**
+	 * @param base The minimum wait in milliseconds
+	 * @param cap The maximum wait in milliseconds
+	 */
+	public DecorrelatedJitterRetryPolicy(long base, long cap) {
+		if (base <= 0 || cap < base) {
+			throw new RuntimeException("Invalid backoff, base=" + base + ", cap=" + cap);
+		}
+		this.base = base;
+		this.cap = cap;
+	}
+
+	@Override
+	public long getWait(int attempts, long previousWait, RetryException retryException) {
+		long upper = Math.min(this.cap, Math.max(this.base, previousWait) * 3);
+		return (upper > this.base)
+				? ThreadLocalRandom.current().nextLong(this.base, upper + 1)
+				: this.base;
+	}
+
+	@Override
+	public void onSuccess(int attempts) {
+	}
+
+	public long getBase() {
+		return base;
+	}
+
+	public long getCap() {
+		return cap;
+	}
+}
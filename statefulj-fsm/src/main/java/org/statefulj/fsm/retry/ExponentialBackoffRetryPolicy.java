@@ -0,0 +1,72 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+
+/**
+ * Doubles the wait after each failed attempt, starting at the base and never exceeding the cap.
+ * Every failure backs off, including a {@link org.statefulj.fsm.StaleStateException}, so that
+ * colliding threads spread themselves out instead of retrying in lock step
+ *
+ * @author Andrew Hall
+ *
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+	private final long base;
+
+	private final long cap;
+
+	/**
+	 * @param base The wait, in milliseconds, after the first failed attempt
+	 * @param cap The maximum wait in milliseconds
+	 */
+	public ExponentialBackoffRetryPolicy(long base, long cap) {
+		if (base <= 0 || cap < base) {
+			throw new RuntimeException("Invalid backoff, base=" + base + ", cap=" + cap);
+		}
+		this.base = base;
+		this.cap = cap;
+	}
+
+	@Override
+	public long getWait(int attempts, long previousWait, RetryException retryException) {
+
+		// Stop doubling once we've reached the cap, so we can't overflow
+		//
+		long wait = this.base;
+		for (int i = 1; i < attempts && wait < this.cap; i++) {
+			wait <<= 1;
+		}
+		return Math.min(wait, this.cap);
+	}
+
+	@Override
+	public void onSuccess(int attempts) {
+	}
+
+	public long getBase() {
+		return base;
+	}
+
+	public long getCap() {
+		return cap;
+	}
+}
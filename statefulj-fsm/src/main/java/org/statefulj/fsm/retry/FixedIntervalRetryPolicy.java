@@ -0,0 +1,43 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+import org.statefulj.fsm.WaitAndRetryException;
+
+/**
+ * The default {@link RetryPolicy}.  A {@link WaitAndRetryException} is retried after the wait it
+ * specifies, any other {@link RetryException} is retried immediately
+ *
+ * @author Andrew Hall
+ *
+ */
+public class FixedIntervalRetryPolicy implements RetryPolicy {
+
+	@Override
+	public long getWait(int attempts, long previousWait, RetryException retryException) {
+		return (retryException instanceof WaitAndRetryException)
+				? ((WaitAndRetryException)retryException).getWait()
+				: 0;
+	}
+
+	@Override
+	public void onSuccess(int attempts) {
+	}
+}
@@ -0,0 +1,100 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.statefulj.fsm.RetryException;
+import org.statefulj.fsm.RetryPolicy;
+
+/**
+ * Limits the retries of an FSM to a budget, so that a burst of contention can't turn into a
+ * retry storm.  The budget is a token bucket: every retry spends a token and every processed
+ * Event earns back a fraction of one, up to the size of the bucket.  Once the bucket is empty,
+ * Events are abandoned rather than retried until enough Events succeed.  The wait before each
+ * permitted retry is decided by the wrapped {@link RetryPolicy}
+ *
+ * The budget is shared by every Event processed by the FSM, so each FSM needs its own instance
+ *
+ * @author Andrew Hall
+ *
+ */
+public class RetryBudgetPolicy implements RetryPolicy {
+
+	// Tokens are tracked in thousandths so that fractional refunds don't need a lock
+	//
+	private static final long SCALE = 1000;
+
+	private final RetryPolicy retryPolicy;
+
+	private final long maxTokens;
+
+	private final long refund;
+
+	private final AtomicLong tokens;
+
+	/**
+	 * @param retryPolicy The RetryPolicy deciding the wait before each retry
+	 * @param maxTokens The maximum number of retries that can be made back to back
+	 * @param refundRatio The fraction of a retry earned back for every processed Event
+	 */
+	public RetryBudgetPolicy(RetryPolicy retryPolicy, int maxTokens, double refundRatio) {
+		if (maxTokens <= 0 || refundRatio < 0) {
+			throw new RuntimeException("Invalid budget, maxTokens=" + maxTokens + ", refundRatio=" + refundRatio);
+		}
+		this.retryPolicy = retryPolicy;
+		this.maxTokens = maxTokens * SCALE;
+		this.refund = Math.round(refundRatio * SCALE);
+		this.tokens = new AtomicLong(this.maxTokens);
+	}
+
+	@Override
+	public long getWait(int attempts, long previousWait, RetryException retryException) {
+		long current;
+		do {
+			current = this.tokens.get();
+			if (current < SCALE) {
+				return -1;
+			}
+		} while(!this.tokens.compareAndSet(current, current - SCALE));
+		return this.retryPolicy.getWait(attempts, previousWait, retryException);
+	}
+
+	@Override
+	public void onSuccess(int attempts) {
+		long current;
+		do {
+			current = this.tokens.get();
+			if (current >= this.maxTokens) {
+				break;
+			}
+		} while(!this.tokens.compareAndSet(current, Math.min(this.maxTokens, current + this.refund)));
+		this.retryPolicy.onSuccess(attempts);
+	}
+
+	/**
+	 * @return The number of retries that can currently be made
+	 */
+	public double getAvailableTokens() {
+		return (double)this.tokens.get() / SCALE;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+}
@@ -17,29 +17,55 @@
  */
 package org.statefulj.persistence.memory;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.statefulj.common.utils.FieldAccessor;
 import org.statefulj.common.utils.ReflectionUtils;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.NameIndex;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Thread safe, in memory Persister.
  *
+ * If the State field is a volatile String that the Persister can access directly, the State is
+ * updated with a compare-and-set and no lock is taken.  Since the Persister lives in its own package,
+ * that means a public volatile String field of a public class; a private or non volatile field can't
+ * be swapped by an AtomicReferenceFieldUpdater, so most Entities fall back to locking.  Updates are
+ * then serialized on striped locks keyed by the identity of the Stateful Entity.  The locks are
+ * shared by all MemoryPersisters, so that two Persisters managing the same Entity don't race, and
+ * are private to this class, so they never contend with locks held on the Stateful Entity itself.
+ * A warning is logged when the State field is first resolved if it falls back to locking
+ *
  * @author Andrew Hall
  *
  */
 public class MemoryPersisterImpl<T> implements Persister<T> {
 
+	private static final Logger logger = LoggerFactory.getLogger(MemoryPersisterImpl.class);
+
+	private static final StaleStateException STALE_STATE = new StaleStateException("Stale State", null, false, false);
+
+	private static final int LOCKS = 64;
+
+	private static final Object[] locks = buildLocks();
+
 	private final Map<String, State<T>> states = new HashMap<String, State<T>>();
+	private volatile NameIndex<State<T>> stateIndex = buildIndex(this.states);
 	private State<T> startState;
 	private String stateFieldName;
-    private volatile Field stateField;
+	private volatile FieldAccessor<String> stateAccessor;
+	private volatile AtomicReferenceFieldUpdater<Object, String> stateUpdater;
 
 	public MemoryPersisterImpl() {}
 
@@ -68,7 +94,9 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 	}
 
 	public synchronized State<T> addState(final State<T> state) {
-		return states.put(state.getName(), state);
+		State<T> previous = states.put(state.getName(), state);
+		this.stateIndex = buildIndex(this.states);
+		return previous;
 	}
 
 	public State<T> removeState(final State<T> state) {
@@ -76,7 +104,9 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 	}
 
 	public synchronized State<T> removeState(final String name) {
-		return states.remove(name);
+		State<T> removed = states.remove(name);
+		this.stateIndex = buildIndex(this.states);
+		return removed;
 	}
 
 	@Override
@@ -87,9 +117,10 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 
 		//Add new states
 		//
-		for(State state : states) {
+		for(State<T> state : states) {
 			this.states.put(state.getName(), state);
 		}
+		this.stateIndex = buildIndex(this.states);
 	}
 
 	public State<T> getStartState() {
@@ -111,22 +142,18 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 
 	@Override
 	public State<T> getCurrent(T stateful) {
-		try {
-			String key = (String)getStateField(stateful).get(stateful);
-			State<T> state = (key != null) ? states.get(key) : null;
-			return (state != null) ? state : this.startState;
-		} catch(Exception e) {
-			throw new RuntimeException(e);
-		}
+		return resolve(getStateAccessor(stateful).get(stateful));
 	}
 
 	public void setCurrent(T stateful, State<T> current) {
-		synchronized(stateful) {
-			try {
-				getStateField(stateful).set(stateful, current.getName());
-			} catch(Exception e) {
-				throw new RuntimeException(e);
-			}
+		FieldAccessor<String> accessor = getStateAccessor(stateful);
+		AtomicReferenceFieldUpdater<Object, String> updater = this.stateUpdater;
+		if (updater != null) {
+			updater.set(stateful, current.getName());
+			return;
+		}
+		synchronized(getLock(stateful)) {
+			accessor.set(stateful, current.getName());
 		}
 	}
 
@@ -139,49 +166,109 @@ public class MemoryPersisterImpl<T> implements Persister<T> {
 	 */
 	@Override
 	public void setCurrent(T stateful, State<T> current, State<T> next) throws StaleStateException {
-		synchronized(stateful) {
-			if (this.getCurrent(stateful).equals(current)) {
-				this.setCurrent(stateful, next);
+		FieldAccessor<String> accessor = getStateAccessor(stateful);
+		AtomicReferenceFieldUpdater<Object, String> updater = this.stateUpdater;
+		if (updater != null) {
+
+			// Swap the exact value we evaluated, so an update in between fails the swap
+			//
+			String key = updater.get(stateful);
+			if (!resolve(key).equals(current) || !updater.compareAndSet(stateful, key, next.getName())) {
+				throw STALE_STATE;
+			}
+			return;
+		}
+		synchronized(getLock(stateful)) {
+			if (resolve(accessor.get(stateful)).equals(current)) {
+				accessor.set(stateful, next.getName());
 			} else {
-				throw new StaleStateException();
+				throw STALE_STATE;
 			}
 		}
 	}
 
-	private Field getStateField(final T stateful) {
-        if (stateField == null)
-            stateField = locateStateField(stateful);
-        return
-            stateField;
+	private State<T> resolve(String key) {
+		State<T> state = (key != null) ? this.stateIndex.get(key) : null;
+		return (state != null) ? state : this.startState;
+	}
+
+	private Object getLock(T stateful) {
+		return locks[System.identityHashCode(stateful) & (LOCKS - 1)];
+	}
+
+	private static Object[] buildLocks() {
+		Object[] locks = new Object[LOCKS];
+		for (int i = 0; i < LOCKS; i++) {
+			locks[i] = new Object();
+		}
+		return locks;
+	}
+
+	private static <T> NameIndex<State<T>> buildIndex(Map<String, State<T>> states) {
+		return new NameIndex<State<T>>(
+				new ArrayList<String>(states.keySet()),
+				new ArrayList<State<T>>(states.values()));
 	}
 
-    private synchronized Field locateStateField(final T stateful) {
-        Field field = null;
+	private FieldAccessor<String> getStateAccessor(final T stateful) {
+		if (stateAccessor == null)
+			stateAccessor = locateStateField(stateful);
+		return
+			stateAccessor;
+	}
 
-        // If a state field name was provided, retrieve by name
-        //
-        if (this.stateFieldName != null && !this.stateFieldName.equals("")) {
+	private synchronized FieldAccessor<String> locateStateField(final T stateful) {
+		Field field = null;
+
+		// If a state field name was provided, retrieve by name
+		//
+		if (this.stateFieldName != null && !this.stateFieldName.equals("")) {
 			field =
 				ReflectionUtils.getField(stateful.getClass(), this.stateFieldName);
-        }
-
-
-        // Else, fetch the field by Annotation
-        //
-        else {
-            field = ReflectionUtils.getFirstAnnotatedField(stateful.getClass(), org.statefulj.persistence.annotations.State.class);
-            if (field != null) {
-                this.stateFieldName = field.getName();
-            }
-        }
-
-        if (field == null) {
-            throw new RuntimeException("Unable to locate a State field for stateful: " + stateful);
-        }
-
-        // Ensure that we can access the field
-        //
-        field.setAccessible(true);
-        return field;
-    }
+		}
+
+		// Else, fetch the field by Annotation
+		//
+		else {
+			field = ReflectionUtils.getFirstAnnotatedField(stateful.getClass(), org.statefulj.persistence.annotations.State.class);
+			if (field != null) {
+				this.stateFieldName = field.getName();
+			}
+		}
+
+		if (field == null) {
+			throw new RuntimeException("Unable to locate a State field for stateful: " + stateful);
+		}
+
+		// Resolve the accessor once, the updater must be published before the accessor
+		//
+		FieldAccessor<String> accessor = FieldAccessor.of(field);
+		this.stateUpdater = buildUpdater(field);
+		if (this.stateUpdater == null) {
+			logger.warn(
+					"State field {}.{} isn't a public volatile String, so updates to it will be locked " +
+					"rather than compare-and-set",
+					field.getDeclaringClass().getName(),
+					field.getName());
+		}
+		return accessor;
+	}
+
+	/**
+	 * A compare-and-set requires a volatile String field that the Persister can access directly;
+	 * otherwise, return null and fall back to locking
+	 */
+	@SuppressWarnings("unchecked")
+	private static AtomicReferenceFieldUpdater<Object, String> buildUpdater(Field field) {
+		int modifiers = field.getModifiers();
+		if (!Modifier.isVolatile(modifiers) || field.getType() != String.class) {
+			return null;
+		}
+		try {
+			return (AtomicReferenceFieldUpdater<Object, String>)(AtomicReferenceFieldUpdater<?, String>)
+					AtomicReferenceFieldUpdater.newUpdater(field.getDeclaringClass(), String.class, field.getName());
+		} catch(RuntimeException e) {
+			return null;
+		}
+	}
 }
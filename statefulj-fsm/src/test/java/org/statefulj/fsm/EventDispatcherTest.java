@@ -0,0 +1,196 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.statefulj.fsm.model.State;
+
+public class EventDispatcherTest {
+
+	@Test(expected=RejectedExecutionException.class)
+	public void testClose() throws Exception {
+		EventDispatcher dispatcher = new EventDispatcher("test", 2);
+		try {
+			assertEquals(Integer.valueOf(1), dispatcher.dispatch(1, new Callable<Integer>() {
+
+				@Override
+				public Integer call() {
+					return 1;
+				}
+			}).get());
+		} finally {
+			dispatcher.close();
+		}
+
+		// A closed EventDispatcher doesn't accept Events
+		//
+		dispatcher.dispatch(1, new Callable<Integer>() {
+
+			@Override
+			public Integer call() {
+				return 2;
+			}
+		});
+	}
+
+	@Test
+	public void testSameLanePerId() {
+		EventDispatcher dispatcher = new EventDispatcher("test", 8);
+		assertEquals(8, dispatcher.getLanes());
+		for (long id = 0; id < 1000; id++) {
+			int lane = dispatcher.getLane(id);
+			assertTrue(lane >= 0 && lane < 8);
+			assertEquals(lane, dispatcher.getLane(Long.valueOf(id)));
+		}
+		assertTrue(dispatcher.getLane(-12345) >= 0);
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testSerialPerId() throws InterruptedException, ExecutionException, TimeoutException {
+		EventDispatcher dispatcher = new EventDispatcher("test", 4);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+		for (int i = 0; i < 200; i++) {
+			final int order = i;
+			futures.add(dispatcher.dispatch("entity", new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					if (running.incrementAndGet() > 1) {
+						overlaps.incrementAndGet();
+					}
+					Thread.yield();
+					running.decrementAndGet();
+					return order;
+				}
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(0, overlaps.get());
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testBacklog() throws InterruptedException, ExecutionException, TimeoutException {
+		EventDispatcher dispatcher = new EventDispatcher("test", 2);
+		final CountDownLatch latch = new CountDownLatch(1);
+		Callable<Object> blocked = new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+				latch.await();
+				return null;
+			}
+		};
+		CompletableFuture<Object> first = dispatcher.dispatch("entity", blocked);
+		dispatcher.dispatch("entity", blocked);
+		CompletableFuture<Object> last = dispatcher.dispatch("entity", blocked);
+
+		// The first is running, the other two are waiting
+		//
+		int lane = dispatcher.getLane("entity");
+		Thread.sleep(100);
+		assertEquals(2, dispatcher.getBacklog(lane));
+		assertEquals(0, dispatcher.getBacklogs()[(lane + 1) % 2]);
+
+		latch.countDown();
+		first.get(5, TimeUnit.SECONDS);
+		last.get(5, TimeUnit.SECONDS);
+		assertEquals(0, dispatcher.getBacklog(lane));
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testReentrantDispatchIsQueued() throws InterruptedException, ExecutionException, TimeoutException {
+		final EventDispatcher dispatcher = new EventDispatcher("test", 1);
+		final List<String> order = new ArrayList<String>();
+		final List<CompletableFuture<String>> inner = new ArrayList<CompletableFuture<String>>();
+		assertFalse(dispatcher.isDispatching());
+		CompletableFuture<String> outer = dispatcher.dispatch("entity", new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				assertTrue(dispatcher.isDispatching());
+
+				// Runs after this task, not within it
+				//
+				inner.add(dispatcher.dispatch("entity", new Callable<String>() {
+
+					@Override
+					public String call() throws Exception {
+						order.add("inner");
+						return "inner";
+					}
+				}));
+				order.add("outer");
+				return "outer";
+			}
+		});
+		assertEquals("outer", outer.get(5, TimeUnit.SECONDS));
+		assertEquals("inner", inner.get(0).get(5, TimeUnit.SECONDS));
+		assertEquals(2, order.size());
+		assertEquals("outer", order.get(0));
+		assertEquals("inner", order.get(1));
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testDispatchToFSM() throws InterruptedException, ExecutionException, TimeoutException {
+		FSM<Foo> fsm = FSM.FSMBuilder
+				.newBuilder(Foo.class)
+				.setRetryAttempts(1)
+				.buildState("stateA")
+					.addTransition("toggle", "stateB")
+				.done()
+				.buildState("stateB")
+					.addTransition("toggle", "stateA")
+				.done()
+				.build();
+
+		// With a single attempt, concurrent toggles would fail with a TooBusyException
+		//
+		EventDispatcher dispatcher = new EventDispatcher("test", 4);
+		Foo foo = new Foo();
+		List<CompletableFuture<State<Foo>>> futures = new ArrayList<CompletableFuture<State<Foo>>>();
+		for (int i = 0; i < 1000; i++) {
+			futures.add(dispatcher.dispatch(fsm, "foo", foo, "toggle"));
+		}
+		for(CompletableFuture<State<Foo>> future : futures) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+		assertEquals("stateA", fsm.getCurrentState(foo).getName());
+		dispatcher.shutdown();
+	}
+}
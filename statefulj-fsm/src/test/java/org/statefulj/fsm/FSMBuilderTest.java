@@ -306,4 +306,80 @@ public class FSMBuilderTest {
         this.fooStateFSM.onEvent(fooState, "test");
         assertEquals("Action called", fooState.msg);
     }
+
+    @Test
+    public void testCompiled() throws TooBusyException {
+        this.fooStateFSM = FSM.FSMBuilder
+                .newBuilder(FooState.class)
+                .setCompiled(true)
+                .buildState("FOO")
+                    .addTransition("to-bar", "BAR")
+                .done()
+                .buildState("BAR")
+                    .addTransition("to-foo", "FOO")
+                .done()
+                .build();
+
+        assertNotNull(this.fooStateFSM.getTransitionTable());
+
+        FooState fooState = new FooState();
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, "to-bar").getName());
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, "to-bar").getName());
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, "unknown").getName());
+        assertEquals("FOO", this.fooStateFSM.onEvent(fooState, "to-foo").getName());
+    }
+
+    @Test
+    public void testNotCompiledByDefault() throws TooBusyException {
+        assertNull(this.fooStateFSM.getTransitionTable());
+    }
+
+    @Test
+    public void testEventKey() throws TooBusyException {
+        this.fooStateFSM = FSM.FSMBuilder
+                .newBuilder(FooState.class)
+                .setCompiled(true)
+                .buildState("FOO")
+                    .addTransition("to-bar", "BAR")
+                .done()
+                .buildState("BAR")
+                    .addTransition("to-foo", "FOO")
+                .done()
+                .build();
+
+        EventKey toBar = this.fooStateFSM.getEventKey("to-bar");
+        EventKey toFoo = this.fooStateFSM.getEventKey("to-foo");
+        assertTrue(toBar.getOrdinal() >= 0);
+        assertEquals(this.fooStateFSM.getEventKey("to-bar"), toBar);
+        assertEquals("to-bar".hashCode(), toBar.hashCode());
+
+        FooState fooState = new FooState();
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, toBar).getName());
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, toBar).getName());
+        assertEquals("FOO", this.fooStateFSM.onEvent(fooState, toFoo).getName());
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void testUnknownEventKey() {
+        FSM.FSMBuilder
+                .newBuilder(FooState.class)
+                .setCompiled(true)
+                .buildState("FOO")
+                    .addTransition("to-bar", "BAR")
+                .done()
+                .buildState("BAR")
+                .done()
+                .build()
+                .getEventKey("unknown");
+    }
+
+    @Test
+    public void testEventKeyNotCompiled() throws TooBusyException {
+        EventKey toBar = this.fooStateFSM.getEventKey("to-bar");
+        assertEquals(-1, toBar.getOrdinal());
+
+        FooState fooState = new FooState();
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, toBar).getName());
+        assertEquals("BAR", this.fooStateFSM.onEvent(fooState, this.fooStateFSM.getEventKey("unknown")).getName());
+    }
 }
@@ -19,9 +19,15 @@ package org.statefulj.fsm;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.junit.Test;
@@ -482,4 +488,464 @@ public class FSMTest {
 		assertEquals(stateB, state);
 	}
 
+	@Test
+	public void testStacklessRetryExceptionsAreOptIn() {
+		assertTrue(new StaleStateException().getStackTrace().length > 0);
+		assertTrue(new WaitAndRetryException(100).getStackTrace().length > 0);
+
+		StaleStateException stale = new StaleStateException("stale", null, false, false);
+		stale.addSuppressed(new RuntimeException());
+		assertEquals(0, stale.getStackTrace().length);
+		assertEquals(0, stale.getSuppressed().length);
+
+		WaitAndRetryException waitAndRetry = new WaitAndRetryException(100, "wait", null, false, false);
+		assertEquals(0, waitAndRetry.getStackTrace().length);
+		assertEquals(100, waitAndRetry.getWait());
+	}
+
+	@Test
+	public void testAsyncRetryDoesNotBlock() throws InterruptedException {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+
+		ManualScheduler scheduler = new ManualScheduler();
+		Persister<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA);
+		final FSM<Foo> fsm = new FSM<Foo>("TooBusy", persister);
+		fsm.setRetryAttempts(3);
+		fsm.setRetryInterval(200);
+		fsm.setScheduler(scheduler);
+
+		// The caller isn't parked for the retry, it's scheduled after the retry interval
+		//
+		CompletableFuture<State<Foo>> future = fsm.onEventAsync(stateful, eventA);
+		assertFalse(future.isDone());
+		assertEquals(1, scheduler.pending());
+		assertEquals(200, scheduler.nextDelay());
+
+		scheduler.runNext();
+		assertFalse(future.isDone());
+		assertEquals(1, scheduler.pending());
+		assertEquals(200, scheduler.nextDelay());
+
+		// But the event still fails once the retries are exhausted
+		//
+		scheduler.runNext();
+		assertEquals(0, scheduler.pending());
+		try {
+			future.get();
+			fail("Expected TooBusyException");
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof TooBusyException);
+		}
+	}
+
+	@Test
+	public void testAsyncTransitionOutOfBlocking() throws InterruptedException, ExecutionException {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		// Transitions
+		//
+		stateB.addTransition(eventA, stateC);
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		ManualScheduler scheduler = new ManualScheduler();
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA);
+		final FSM<Foo> fsm = new FSM<Foo>("Async", persister);
+		fsm.setRetryInterval(50);
+		fsm.setScheduler(scheduler);
+
+		// Blocked until we move out of stateA
+		//
+		CompletableFuture<State<Foo>> future = fsm.onEventAsync(stateful, eventA);
+		scheduler.runNext();
+		assertFalse(future.isDone());
+		persister.setCurrent(stateful, stateB);
+
+		// The next retry transitions out of stateB
+		//
+		scheduler.runNext();
+		assertTrue(future.isDone());
+		assertEquals(stateC, future.get());
+	}
+
+	@Test
+	public void testAsyncPersister() throws InterruptedException, ExecutionException {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+
+		// Transitions
+		//
+		final MutableInt actions = new MutableInt();
+		stateA.addTransition(eventA, stateB, new Action<Foo>() {
+
+			@Override
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				actions.increment();
+			}
+		});
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		ManualScheduler scheduler = new ManualScheduler();
+		AsyncMemoryPersister persister = new AsyncMemoryPersister(states, stateA, 1, scheduler);
+		final FSM<Foo> fsm = new FSM<Foo>("Async", persister);
+		fsm.setRetryInterval(1);
+		fsm.setScheduler(scheduler);
+
+		// The first update is stale, so the Event is retried before the Action runs once
+		//
+		CompletableFuture<State<Foo>> future = fsm.onEventAsync(stateful, eventA);
+		scheduler.runNext();  // Stale update
+		assertEquals(0, actions.intValue());
+		scheduler.runNext();  // Retry
+		assertFalse(future.isDone());
+		scheduler.runNext();  // Update
+		assertTrue(future.isDone());
+		assertEquals(stateB, future.get());
+		assertEquals(stateB, persister.getCurrent(stateful));
+		assertEquals(2, persister.updates.get());
+		assertEquals(1, actions.intValue());
+	}
+
+	@Test
+	public void testAsyncTransitionHook() throws InterruptedException, ExecutionException {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+
+		// Transitions
+		//
+		final MutableInt actions = new MutableInt();
+		stateA.addTransition("eventA", stateB, new Action<Foo>() {
+
+			@Override
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				actions.increment();
+			}
+		});
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		ManualScheduler scheduler = new ManualScheduler();
+		AsyncMemoryPersister persister = new AsyncMemoryPersister(states, stateA, 0, scheduler);
+
+		// A subclass which doesn't persist the Transition
+		//
+		FSM<Foo> fsm = new FSM<Foo>("Async", persister) {
+
+			@Override
+			protected CompletionStage<Void> transitionAsync(Foo stateful, State<Foo> current, Transition<Foo> transition, StateActionPair<Foo> pair) {
+				return CompletableFuture.completedFuture(null);
+			}
+		};
+		fsm.setScheduler(scheduler);
+
+		CompletableFuture<State<Foo>> future = fsm.onEventAsync(stateful, "eventA");
+		assertTrue(future.isDone());
+		assertEquals(stateA, future.get());
+		assertEquals(0, scheduler.pending());
+		assertEquals(0, persister.updates.get());
+		assertEquals(1, actions.intValue());
+	}
+
+	@Test
+	public void testOnEvents() {
+
+		// Stateful
+		//
+		final Foo foo1 = new Foo();
+		final Foo foo2 = new Foo();
+		final Foo stale = new Foo();
+		final Foo blocked = new Foo();
+		final Foo done = new Foo();
+
+		// Events
+		//
+		final String eventA = "eventA";
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		State<Foo> stateC = new StateImpl<Foo>("stateC", false, true); // blocking
+
+		// Transitions
+		//
+		final MutableInt actions = new MutableInt();
+		stateA.addTransition(eventA, stateB, new Action<Foo>() {
+
+			@Override
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				actions.increment();
+			}
+		});
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		final MutableInt batches = new MutableInt();
+		BatchMemoryPersister persister = new BatchMemoryPersister(states, stateA, stale, batches);
+		persister.setCurrent(blocked, stateC);
+		persister.setCurrent(done, stateB);
+		FSM<Foo> fsm = new FSM<Foo>("Batch", persister);
+
+		List<EventOutcome<Foo>> outcomes = fsm.onEvents(Arrays.asList(foo1, blocked, stale, done, foo2), eventA);
+
+		assertEquals(5, outcomes.size());
+		assertEquals(EventOutcome.Status.TRANSITIONED, outcomes.get(0).getStatus());
+		assertEquals(stateB, outcomes.get(0).getState());
+		assertEquals(EventOutcome.Status.BLOCKED, outcomes.get(1).getStatus());
+		assertEquals(EventOutcome.Status.STALE, outcomes.get(2).getStatus());
+		assertEquals(EventOutcome.Status.NO_TRANSITION, outcomes.get(3).getStatus());
+		assertEquals(EventOutcome.Status.TRANSITIONED, outcomes.get(4).getStatus());
+		assertSame(foo2, outcomes.get(4).getStateful());
+
+		assertEquals(stateB, persister.getCurrent(foo2));
+		assertEquals(stateA, persister.getCurrent(stale));
+		assertEquals(2, actions.intValue());
+		assertEquals(1, batches.intValue());
+	}
+
+	@Test
+	public void testOnEventsTooBusy() {
+
+		// Stateful
+		//
+		final Foo foo = new Foo();
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+
+		// Transitions
+		//
+		stateA.addTransition("eventA", stateA, new WaitAndRetryActionImpl<Foo>(0));
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		FSM<Foo> fsm = new FSM<Foo>("Batch", persister);
+		fsm.setRetryAttempts(2);
+
+		// The Action keeps requesting a retry, which isn't the same as a stale State
+		//
+		List<EventOutcome<Foo>> outcomes = fsm.onEvents(Arrays.asList(foo), "eventA");
+		assertEquals(EventOutcome.Status.TOO_BUSY, outcomes.get(0).getStatus());
+	}
+
+	@Test
+	public void testWaitRefused() throws TooBusyException {
+
+		// Stateful
+		//
+		final Foo foo = new Foo();
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+
+		// Transitions
+		//
+		stateA.addTransition("eventA", stateA, new WaitAndRetryActionImpl<Foo>(60000));
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		FSM<Foo> fsm = new FSM<Foo>("WaitRefused", persister);
+
+		// The Action asks to wait, which the thread refuses
+		//
+		FSM.setWaitRefused(true);
+		try {
+			assertTrue(FSM.isWaitRefused());
+			fsm.onEvent(foo, "eventA");
+			fail("Expected TooBusyException");
+		} catch(TooBusyException e) {
+			// Expected
+		} finally {
+			FSM.setWaitRefused(false);
+		}
+		assertFalse(FSM.isWaitRefused());
+	}
+
+	@Test
+	public void testOnEventsBatchHook() {
+
+		// Stateful
+		//
+		final Foo foo1 = new Foo();
+		final Foo foo2 = new Foo();
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+
+		// Transitions
+		//
+		final MutableInt actions = new MutableInt();
+		stateA.addTransition("eventA", stateB, new Action<Foo>() {
+
+			@Override
+			public void execute(Foo stateful, String event, Object... args) throws RetryException {
+				actions.increment();
+			}
+		});
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+
+		MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+
+		// A subclass which doesn't persist the Transition of a batch
+		//
+		FSM<Foo> fsm = new FSM<Foo>("Batch", persister) {
+
+			@Override
+			protected boolean[] transition(List<Foo> statefuls, State<Foo> current, Transition<Foo> transition, StateActionPair<Foo> pair) {
+				boolean[] updated = new boolean[statefuls.size()];
+				Arrays.fill(updated, true);
+				return updated;
+			}
+		};
+
+		List<EventOutcome<Foo>> outcomes = fsm.onEvents(Arrays.asList(foo1, foo2), "eventA");
+		assertEquals(EventOutcome.Status.TRANSITIONED, outcomes.get(0).getStatus());
+		assertEquals(EventOutcome.Status.TRANSITIONED, outcomes.get(1).getStatus());
+		assertEquals(stateA, persister.getCurrent(foo1));
+		assertEquals(stateA, persister.getCurrent(foo2));
+		assertEquals(2, actions.intValue());
+	}
+
+	static class AsyncMemoryPersister extends MemoryPersisterImpl<Foo> implements AsyncPersister<Foo> {
+
+		private final AtomicInteger updates = new AtomicInteger();
+		private final int stale;
+		private final Executor executor;
+
+		AsyncMemoryPersister(List<State<Foo>> states, State<Foo> startState, int stale, Executor executor) {
+			super(states, startState);
+			this.stale = stale;
+			this.executor = executor;
+		}
+
+		@Override
+		public CompletionStage<Void> setCurrentAsync(final Foo stateful, final State<Foo> current, final State<Foo> next) {
+			final CompletableFuture<Void> future = new CompletableFuture<Void>();
+			this.executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						if (updates.incrementAndGet() <= stale) {
+							throw new StaleStateException();
+						}
+						setCurrent(stateful, current, next);
+						future.complete(null);
+					} catch(StaleStateException e) {
+						future.completeExceptionally(e);
+					}
+				}
+			});
+			return future;
+		}
+	}
+
+	static class BatchMemoryPersister extends MemoryPersisterImpl<Foo> implements BatchPersister<Foo> {
+
+		private final Foo stale;
+		private final MutableInt batches;
+
+		BatchMemoryPersister(List<State<Foo>> states, State<Foo> startState, Foo stale, MutableInt batches) {
+			super(states, startState);
+			this.stale = stale;
+			this.batches = batches;
+		}
+
+		@Override
+		public boolean[] setCurrent(List<Foo> statefuls, State<Foo> current, State<Foo> next) {
+			this.batches.increment();
+			boolean[] updated = new boolean[statefuls.size()];
+			for (int i = 0; i < updated.length; i++) {
+				if (statefuls.get(i) != this.stale) {
+					setCurrent(statefuls.get(i), next);
+					updated[i] = true;
+				}
+			}
+			return updated;
+		}
+	}
+
 }
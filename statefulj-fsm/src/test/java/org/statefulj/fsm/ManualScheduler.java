@@ -0,0 +1,123 @@
+package org.statefulj.fsm;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler whose tasks only run when the test calls {@link #runNext()}, on the test's thread.
+ * Delays are recorded but never waited on
+ */
+public class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+	private final List<Task> tasks = new LinkedList<Task>();
+
+	/**
+	 * @return Number of tasks waiting to run
+	 */
+	public synchronized int pending() {
+		return this.tasks.size();
+	}
+
+	/**
+	 * @return Delay, in milliseconds, of the next task to run
+	 */
+	public synchronized long nextDelay() {
+		return this.tasks.get(0).delay;
+	}
+
+	/**
+	 * Run the next task in the order it was submitted
+	 */
+	public void runNext() {
+		Task task;
+		synchronized(this) {
+			if (this.tasks.isEmpty()) {
+				throw new IllegalStateException("Nothing scheduled");
+			}
+			task = this.tasks.remove(0);
+		}
+		task.run();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		this.schedule(command, 0, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		Task task = new Task(Executors.callable(command), unit.toMillis(delay));
+		synchronized(this) {
+			this.tasks.add(task);
+		}
+		return task;
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void shutdown() {
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return false;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return false;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) {
+		return false;
+	}
+
+	private static class Task extends FutureTask<Object> implements ScheduledFuture<Object> {
+
+		private final long delay;
+
+		Task(Callable<Object> callable, long delay) {
+			super(callable);
+			this.delay = delay;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.delay, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(this.delay, other.getDelay(TimeUnit.MILLISECONDS));
+		}
+	}
+}
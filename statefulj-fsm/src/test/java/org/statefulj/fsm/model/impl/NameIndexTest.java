@@ -0,0 +1,50 @@
+package org.statefulj.fsm.model.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NameIndexTest {
+
+	@Test
+	public void testOrdinals() {
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			names.add("state" + i);
+		}
+		NameIndex<String> index = new NameIndex<String>(names, names);
+
+		assertEquals(100, index.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, index.ordinal("state" + i));
+			assertEquals("state" + i, index.get("state" + i));
+			assertEquals("state" + i, index.getName(i));
+		}
+		assertEquals(-1, index.ordinal("state100"));
+		assertNull(index.get("state100"));
+	}
+
+	@Test
+	public void testIdenticalHashCodes() {
+		// "Aa" and "BB" share the same hashCode
+		//
+		List<String> names = Arrays.asList("Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa");
+		NameIndex<String> index = new NameIndex<String>(names, names);
+
+		for (int i = 0; i < names.size(); i++) {
+			assertEquals(i, index.ordinal(names.get(i)));
+		}
+		assertEquals(-1, index.ordinal("AaAaAa"));
+	}
+
+	@Test
+	public void testEmpty() {
+		NameIndex<String> index = new NameIndex<String>(new ArrayList<String>(), new ArrayList<String>());
+		assertEquals(0, index.size());
+		assertEquals(-1, index.ordinal("state"));
+	}
+}
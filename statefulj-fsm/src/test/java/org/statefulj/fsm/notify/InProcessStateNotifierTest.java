@@ -0,0 +1,334 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.notify;
+
+import static org.junit.Assert.*;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.Foo;
+import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.StateNotifier;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+public class InProcessStateNotifierTest {
+
+	@Test
+	public void testNotify() throws InterruptedException {
+		InProcessStateNotifier<Foo> notifier = new InProcessStateNotifier<Foo>();
+		Foo foo = new Foo();
+		Foo bar = new Foo();
+
+		StateNotifier.Subscription fooSubscription = notifier.subscribe(foo);
+		StateNotifier.Subscription barSubscription = notifier.subscribe(bar);
+		assertFalse(fooSubscription.isNotified());
+
+		notifier.notify(foo, null, null);
+		assertTrue(fooSubscription.isNotified());
+		assertTrue(fooSubscription.await(0));
+		assertFalse(barSubscription.isNotified());
+		assertFalse(barSubscription.await(10));
+
+		barSubscription.cancel();
+		notifier.notify(bar, null, null);
+		assertFalse(barSubscription.isNotified());
+	}
+
+	@Test
+	public void testKeyedById() {
+		InProcessStateNotifier<Entity> notifier = new InProcessStateNotifier<Entity>(Id.class);
+		StateNotifier.Subscription subscription = notifier.subscribe(new Entity(1L));
+		notifier.notify(new Entity(2L), null, null);
+		assertFalse(subscription.isNotified());
+		notifier.notify(new Entity(1L), null, null);
+		assertTrue(subscription.isNotified());
+	}
+
+	@Test
+	public void testKeyedByIdByDefault() {
+		InProcessStateNotifier<Entity> notifier = new InProcessStateNotifier<Entity>();
+		StateNotifier.Subscription subscription = notifier.subscribe(new Entity(1L));
+		notifier.notify(new Entity(1L), null, null);
+		assertTrue(subscription.isNotified());
+	}
+
+	@Test
+	public void testBlockedEventDoesNotPoll() throws Exception {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// States
+		//
+		final State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		final State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		// Transitions
+		//
+		stateA.addTransition("unblock", stateB);
+		stateB.addTransition("eventA", stateC);
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		CountingPersister persister = new CountingPersister(new MemoryPersisterImpl<Foo>(stateful, states, stateA));
+		final FSM<Foo> fsm = new FSM<Foo>("Notify", persister);
+		fsm.setRetryAttempts(-1);
+		fsm.setRetryInterval(60000);
+		fsm.setStateNotifier(new InProcessStateNotifier<Foo>());
+
+		// Blocked, but only checks the State once within the retry interval
+		//
+		CompletableFuture<State<Foo>> future = CompletableFuture.supplyAsync(new Supplier<State<Foo>>() {
+
+			@Override
+			public State<Foo> get() {
+				try {
+					return fsm.onEvent(stateful, "eventA");
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		Thread.sleep(200);
+		assertFalse(future.isDone());
+		assertEquals(1, persister.writes.get());
+
+		// Unblock - the notification wakes the Event well before the retry interval
+		//
+		fsm.onEvent(stateful, "unblock");
+		assertEquals(stateC, future.get(5, TimeUnit.SECONDS));
+		assertTrue(persister.writes.get() <= 4);
+	}
+
+	@Test
+	public void testTimedOutWaitDoesNotWrite() throws Exception {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// States
+		//
+		final State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		final State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		// Transitions
+		//
+		stateA.addTransition("unblock", stateB);
+		stateB.addTransition("eventA", stateC);
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		CountingPersister persister = new CountingPersister(new MemoryPersisterImpl<Foo>(stateful, states, stateA));
+		final FSM<Foo> fsm = new FSM<Foo>("Notify", persister);
+		fsm.setRetryAttempts(-1);
+		fsm.setRetryInterval(10);
+		fsm.setStateRecheckInterval(60000);
+		fsm.setStateNotifier(new InProcessStateNotifier<Foo>());
+
+		// Blocked - the waits time out many times, but the State is only written by the first check
+		//
+		CompletableFuture<State<Foo>> future = CompletableFuture.supplyAsync(new Supplier<State<Foo>>() {
+
+			@Override
+			public State<Foo> get() {
+				try {
+					return fsm.onEvent(stateful, "eventA");
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		Thread.sleep(300);
+		assertFalse(future.isDone());
+		assertEquals(1, persister.writes.get());
+
+		fsm.onEvent(stateful, "unblock");
+		assertEquals(stateC, future.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testRecheckAfterMissedNotification() throws Exception {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// States
+		//
+		final State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		final State<Foo> stateC = new StateImpl<Foo>("stateC");
+
+		// Transitions
+		//
+		stateB.addTransition("eventA", stateC);
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		states.add(stateC);
+
+		final RemotePersister persister = new RemotePersister(new MemoryPersisterImpl<Foo>(stateful, states, stateA), stateA);
+		final FSM<Foo> fsm = new FSM<Foo>("Notify", persister);
+		fsm.setRetryAttempts(-1);
+		fsm.setRetryInterval(10);
+		fsm.setStateRecheckInterval(10);
+		fsm.setStateNotifier(new InProcessStateNotifier<Foo>());
+
+		CompletableFuture<State<Foo>> future = CompletableFuture.supplyAsync(new Supplier<State<Foo>>() {
+
+			@Override
+			public State<Foo> get() {
+				try {
+					return fsm.onEvent(stateful, "eventA");
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+
+		// Written by another process, so there's no notification and the Entity's State is out of date.
+		// The persisted State is re-checked once the recheck interval has passed
+		//
+		assertTrue(persister.checked.await(5, TimeUnit.SECONDS));
+		persister.remote = stateB;
+		assertEquals(stateC, future.get(5, TimeUnit.SECONDS));
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	public static @interface Id {
+	}
+
+	public static class Entity {
+
+		@Id
+		Long id;
+
+		public Entity(Long id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * Persists the State remotely; the State of the Entity is only refreshed when it's found to be stale
+	 */
+	private static class RemotePersister implements Persister<Foo> {
+
+		private volatile State<Foo> remote;
+
+		private final CountDownLatch checked = new CountDownLatch(1);
+
+		private final MemoryPersisterImpl<Foo> persister;
+
+		private RemotePersister(MemoryPersisterImpl<Foo> persister, State<Foo> remote) {
+			this.persister = persister;
+			this.remote = remote;
+		}
+
+		@Override
+		public State<Foo> getCurrent(Foo stateful) {
+			return this.persister.getCurrent(stateful);
+		}
+
+		@Override
+		public synchronized void setCurrent(Foo stateful, State<Foo> current, State<Foo> next) throws StaleStateException {
+			try {
+				if (this.remote != current) {
+					this.persister.setCurrent(stateful, this.remote);
+					throw new StaleStateException();
+				}
+				this.remote = next;
+				this.persister.setCurrent(stateful, current, next);
+			} finally {
+				this.checked.countDown();
+			}
+		}
+
+		@Override
+		public void setStates(Collection<State<Foo>> states) {
+			this.persister.setStates(states);
+		}
+
+		@Override
+		public void setStartState(State<Foo> startState) {
+			this.persister.setStartState(startState);
+		}
+	}
+
+	private static class CountingPersister implements Persister<Foo> {
+
+		private final AtomicInteger writes = new AtomicInteger();
+
+		private final Persister<Foo> persister;
+
+		private CountingPersister(Persister<Foo> persister) {
+			this.persister = persister;
+		}
+
+		@Override
+		public State<Foo> getCurrent(Foo stateful) {
+			return this.persister.getCurrent(stateful);
+		}
+
+		@Override
+		public void setCurrent(Foo stateful, State<Foo> current, State<Foo> next) throws StaleStateException {
+			this.writes.incrementAndGet();
+			this.persister.setCurrent(stateful, current, next);
+		}
+
+		@Override
+		public void setStates(Collection<State<Foo>> states) {
+			this.persister.setStates(states);
+		}
+
+		@Override
+		public void setStartState(State<Foo> startState) {
+			this.persister.setStartState(startState);
+		}
+	}
+}
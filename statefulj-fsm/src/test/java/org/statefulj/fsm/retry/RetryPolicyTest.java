@@ -0,0 +1,126 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.fsm.retry;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.Foo;
+import org.statefulj.fsm.Persister;
+import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.WaitAndRetryException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+import org.statefulj.persistence.memory.MemoryPersisterImpl;
+
+public class RetryPolicyTest {
+
+	@Test
+	public void testFixedInterval() {
+		FixedIntervalRetryPolicy policy = new FixedIntervalRetryPolicy();
+		assertEquals(0, policy.getWait(1, 0, new StaleStateException()));
+		assertEquals(250, policy.getWait(1, 0, new WaitAndRetryException(250)));
+	}
+
+	@Test
+	public void testExponentialBackoff() {
+		ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(10, 100);
+		assertEquals(10, policy.getWait(1, 0, new StaleStateException()));
+		assertEquals(20, policy.getWait(2, 10, new StaleStateException()));
+		assertEquals(40, policy.getWait(3, 20, new StaleStateException()));
+		assertEquals(80, policy.getWait(4, 40, new StaleStateException()));
+		assertEquals(100, policy.getWait(5, 80, new StaleStateException()));
+		assertEquals(100, policy.getWait(Integer.MAX_VALUE, 100, new StaleStateException()));
+	}
+
+	@Test
+	public void testDecorrelatedJitter() {
+		DecorrelatedJitterRetryPolicy policy = new DecorrelatedJitterRetryPolicy(10, 100);
+		long wait = 0;
+		for (int attempts = 1; attempts < 1000; attempts++) {
+			long previous = wait;
+			wait = policy.getWait(attempts, previous, new StaleStateException());
+			assertTrue(wait >= 10);
+			assertTrue(wait <= 100);
+			assertTrue(wait <= Math.max(10, previous) * 3);
+		}
+	}
+
+	@Test
+	public void testRetryBudget() {
+		RetryBudgetPolicy policy = new RetryBudgetPolicy(new FixedIntervalRetryPolicy(), 2, 0.5);
+
+		// Spend the budget
+		//
+		assertEquals(0, policy.getWait(1, 0, new StaleStateException()));
+		assertEquals(0, policy.getWait(2, 0, new StaleStateException()));
+		assertEquals(-1, policy.getWait(3, 0, new StaleStateException()));
+
+		// Two successes earn back a retry
+		//
+		policy.onSuccess(0);
+		assertEquals(-1, policy.getWait(1, 0, new StaleStateException()));
+		policy.onSuccess(0);
+		assertEquals(0, policy.getWait(1, 0, new StaleStateException()));
+
+		// Never exceeds the size of the bucket
+		//
+		for (int i = 0; i < 100; i++) {
+			policy.onSuccess(0);
+		}
+		assertEquals(2.0, policy.getAvailableTokens(), 0.0);
+	}
+
+	@Test
+	public void testFSMAbandonsWhenBudgetIsSpent() {
+
+		// Stateful
+		//
+		final Foo stateful = new Foo();
+
+		// States
+		//
+		State<Foo> stateA = new StateImpl<Foo>("stateA", false, true); // blocking
+
+		// FSM
+		//
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+
+		Persister<Foo> persister = new MemoryPersisterImpl<Foo>(stateful, states, stateA);
+		FSM<Foo> fsm = new FSM<Foo>("Budget", persister);
+		fsm.setRetryAttempts(-1);
+		fsm.setRetryInterval(1);
+		RetryBudgetPolicy policy = new RetryBudgetPolicy(fsm.getRetryPolicy(), 5, 0.1);
+		fsm.setRetryPolicy(policy);
+
+		// Unlimited attempts, but the budget stops the retries
+		//
+		try {
+			fsm.onEvent(stateful, "eventA");
+			fail("Expected TooBusyException");
+		} catch(TooBusyException e) {
+		}
+		assertEquals(0.0, policy.getAvailableTokens(), 0.0);
+	}
+}
@@ -0,0 +1,178 @@
+/***
+ *
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.statefulj.persistence.memory;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.statefulj.fsm.FSM;
+import org.statefulj.fsm.Foo;
+import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.TooBusyException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.StateImpl;
+
+public class MemoryPersisterImplTest {
+
+	public static class VolatileFoo {
+
+		@org.statefulj.persistence.annotations.State
+		public volatile String state;
+	}
+
+	@Test
+	public void testCompareAndSet() throws StaleStateException {
+		State<VolatileFoo> stateA = new StateImpl<VolatileFoo>("stateA");
+		State<VolatileFoo> stateB = new StateImpl<VolatileFoo>("stateB");
+		List<State<VolatileFoo>> states = new LinkedList<State<VolatileFoo>>();
+		states.add(stateA);
+		states.add(stateB);
+		MemoryPersisterImpl<VolatileFoo> persister = new MemoryPersisterImpl<VolatileFoo>(states, stateA);
+
+		VolatileFoo foo = new VolatileFoo();
+		assertEquals(stateA, persister.getCurrent(foo));
+		persister.setCurrent(foo, stateA, stateB);
+		assertEquals("stateB", foo.state);
+
+		try {
+			persister.setCurrent(foo, stateA, stateB);
+			fail("Expected StaleStateException");
+		} catch(StaleStateException e) {
+		}
+		assertEquals("stateB", foo.state);
+	}
+
+	@Test
+	public void testDoesNotLockEntity() throws InterruptedException {
+		State<Foo> stateA = new StateImpl<Foo>("stateA");
+		State<Foo> stateB = new StateImpl<Foo>("stateB");
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		final MemoryPersisterImpl<Foo> persister = new MemoryPersisterImpl<Foo>(states, stateA);
+		final Foo foo = new Foo();
+		final State<Foo> next = stateB;
+
+		// Update the State while we hold the Entity's monitor
+		//
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				persister.setCurrent(foo, next);
+			}
+		});
+		synchronized(foo) {
+			thread.start();
+			thread.join(5000);
+			assertFalse(thread.isAlive());
+		}
+		assertEquals(stateB, persister.getCurrent(foo));
+	}
+
+	@Test
+	public void testConcurrentToggles() throws InterruptedException {
+		final FSM<VolatileFoo> fsm = FSM.FSMBuilder
+				.newBuilder(VolatileFoo.class)
+				.setRetryAttempts(-1)
+				.buildState("stateA")
+					.addTransition("toggle", "stateB")
+				.done()
+				.buildState("stateB")
+					.addTransition("toggle", "stateA")
+				.done()
+				.build();
+		final VolatileFoo foo = new VolatileFoo();
+		final AtomicInteger failures = new AtomicInteger();
+
+		// Every toggle must be applied exactly once, so an even number
+		// of toggles ends up back where we started
+		//
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						try {
+							fsm.onEvent(foo, "toggle");
+						} catch(TooBusyException e) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures.get());
+		assertEquals("stateA", foo.state);
+	}
+
+	@Test
+	public void testConcurrentTogglesAcrossPersisters() throws InterruptedException {
+		final State<Foo> stateA = new StateImpl<Foo>("stateA");
+		final State<Foo> stateB = new StateImpl<Foo>("stateB");
+		List<State<Foo>> states = new LinkedList<State<Foo>>();
+		states.add(stateA);
+		states.add(stateB);
+		final Foo foo = new Foo();
+
+		// Two Persisters manage the same Entity, which can't be swapped, so both must take the same lock
+		//
+		final List<MemoryPersisterImpl<Foo>> persisters = new LinkedList<MemoryPersisterImpl<Foo>>();
+		persisters.add(new MemoryPersisterImpl<Foo>(states, stateA));
+		persisters.add(new MemoryPersisterImpl<Foo>(states, stateA));
+		final AtomicInteger toggles = new AtomicInteger();
+
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			final MemoryPersisterImpl<Foo> persister = persisters.get(i % 2);
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 100000; j++) {
+						State<Foo> current = persister.getCurrent(foo);
+						State<Foo> next = (current == stateA) ? stateB : stateA;
+						try {
+							persister.setCurrent(foo, current, next);
+							toggles.incrementAndGet();
+						} catch(StaleStateException e) {
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		// Every successful toggle was applied exactly once
+		//
+		assertEquals((toggles.get() % 2 == 0) ? stateA : stateB, persisters.get(0).getCurrent(foo));
+	}
+}
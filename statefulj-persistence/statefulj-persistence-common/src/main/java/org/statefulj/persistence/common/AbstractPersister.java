@@ -19,6 +19,7 @@
 package org.statefulj.persistence.common;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -26,10 +27,12 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.statefulj.common.utils.FieldAccessor;
 import org.statefulj.common.utils.ReflectionUtils;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
+import org.statefulj.fsm.model.impl.NameIndex;
 
 public abstract class AbstractPersister<T> implements Persister<T> {
 
@@ -37,9 +40,12 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 
 	private Field idField;
 	private Field stateField;
+	private FieldAccessor<Object> idAccessor;
+	private FieldAccessor<Object> stateAccessor;
 	private State<T> startState;
 	private Class<T> clazz;
 	private HashMap<String, State<T>> states = new HashMap<String, State<T>>();
+	private volatile NameIndex<State<T>> stateIndex;
 
 	public AbstractPersister(
 			List<State<T>> states,
@@ -56,7 +62,7 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 		if (this.idField == null) {
 			throw new RuntimeException("No Id field defined");
 		}
-		this.idField.setAccessible(true);
+		this.idAccessor = FieldAccessor.of(this.idField);
 
 		this.stateField = findStateField(stateFieldName, clazz);
 
@@ -73,7 +79,7 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 							getStateFieldType()));
 		}
 
-		this.stateField.setAccessible(true);
+		this.stateAccessor = FieldAccessor.of(this.stateField);
 
 		// Start state - returned when no state is set
 		//
@@ -84,6 +90,7 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 		for(State<T> state : states) {
 			this.states.put(state.getName(), state);
 		}
+		this.indexStates();
 	}
 
 	@Override
@@ -91,7 +98,7 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 		State<T> state = null;
 		try {
 			String stateKey = this.getState(stateful);
-			state = (stateKey == null) ? this.startState : this.states.get(stateKey);
+			state = (stateKey == null) ? this.startState : this.stateIndex.get(stateKey);
 		} catch (NoSuchFieldException e) {
 			throw new RuntimeException(e);
 		} catch (SecurityException e) {
@@ -124,6 +131,7 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 		for(State<T> state : states) {
 			this.states.put(state.getName(), state);
 		}
+		this.indexStates();
 	}
 
 	@Override
@@ -160,6 +168,11 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 
 	protected void setIdField(Field idField) {
 		this.idField = idField;
+		this.idAccessor = FieldAccessor.of(idField);
+	}
+
+	protected FieldAccessor<Object> getIdAccessor() {
+		return idAccessor;
 	}
 
 	protected Field getStateField() {
@@ -168,6 +181,11 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 
 	protected void setStateField(Field stateField) {
 		this.stateField = stateField;
+		this.stateAccessor = FieldAccessor.of(stateField);
+	}
+
+	protected FieldAccessor<Object> getStateAccessor() {
+		return stateAccessor;
 	}
 
 	protected State<T> getStartState() {
@@ -186,17 +204,27 @@ public abstract class AbstractPersister<T> implements Persister<T> {
 		return states;
 	}
 
+	/**
+	 * Rebuild the index used to resolve State names.  Must be invoked if the Map returned by
+	 * {@link #getStates()} is modified
+	 */
+	protected void indexStates() {
+		this.stateIndex = new NameIndex<State<T>>(
+				new ArrayList<String>(this.states.keySet()),
+				new ArrayList<State<T>>(this.states.values()));
+	}
+
 	protected Object getId(T obj) throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException {
-		return this.idField.get(obj);
+		return this.idAccessor.get(obj);
 	}
 
 	protected String getState(T obj) throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException {
-		return (String)this.stateField.get(obj);
+		return (String)this.stateAccessor.get(obj);
 	}
 
 	protected void setState(T obj, String state) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException {
 		state = (state == null) ? this.startState.getName() : state;
-		this.stateField.set(obj, state);
+		this.stateAccessor.set(obj, state);
 	}
 
 	protected void throwStaleState(State<T> current, State<T> next) throws StaleStateException {
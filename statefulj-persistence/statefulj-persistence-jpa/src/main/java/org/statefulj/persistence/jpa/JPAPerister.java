@@ -19,27 +19,31 @@
 package org.statefulj.persistence.jpa;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.Id;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.Query;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.CriteriaUpdate;
-import javax.persistence.criteria.Path;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
+import javax.persistence.Version;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionTemplate;
-import org.springframework.transaction.support.TransactionCallback;
+import org.statefulj.fsm.BatchPersister;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
@@ -47,16 +51,24 @@ import org.statefulj.persistence.common.AbstractPersister;
 
 import static org.statefulj.common.utils.ReflectionUtils.*;
 
-public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T> {
+public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>, BatchPersister<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(JPAPerister.class);
 
+	private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private boolean optimistic = false;
+
 	private EntityManager entityManager;
 
 	private PlatformTransactionManager transactionManager;
 
+	private volatile Statements statements;
+
 	public JPAPerister(List<State<T>> states, State<T> startState, Class<T> clazz, EntityManagerFactoryInfo entityManagerFactory, PlatformTransactionManager transactionManager) {
-		this(states, null, startState, clazz, entityManagerFactory.getNativeEntityManagerFactory().createEntityManager(), transactionManager);
+		this(states, null, startState, clazz, createSharedEntityManager(entityManagerFactory), transactionManager);
 	}
 
 	public JPAPerister(List<State<T>> states, String stateFieldName, State<T> startState, Class<T> clazz, EntityManager entityManager, PlatformTransactionManager transactionManager) {
@@ -81,7 +93,7 @@ public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>
 			// Has this Entity been persisted to the database?
 			//
 			Object id = getId(stateful);
-			if (id != null && entityManager.contains(stateful)) {
+			if (!this.optimistic && id != null && entityManager.contains(stateful)) {
 				updateStateInDB(stateful, current, next, id);
 				setState(stateful, next.getName());
 			} else {
@@ -98,6 +110,124 @@ public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>
 		}
 	}
 
+	/**
+	 * Set the current State of a batch of Stateful Entities.  Persisted Entities are updated in chunks of
+	 * {@link #getMaxBatchSize()}: the States of a chunk are read and locked with a single SELECT, then
+	 * the Entities still in the current State are updated with a single qualified UPDATE.  Stale Entities
+	 * are refreshed with the State read from the database
+	 *
+	 * @param statefuls Stateful Entities
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return For each Stateful Entity, in order, whether its State was updated
+	 */
+	@Override
+	public boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+		boolean[] updated = new boolean[statefuls.size()];
+
+		// A composite id can't be matched with an IN list, so update one at a time
+		//
+		boolean batchable = !this.optimistic && (getReferencedField(getClazz(), EmbeddedId.class) == null);
+
+		try {
+			List<Integer> persisted = new ArrayList<Integer>(statefuls.size());
+			for (int i = 0; i < updated.length; i++) {
+				T stateful = statefuls.get(i);
+				Object id = getId(stateful);
+				if (batchable && id != null && entityManager.contains(stateful)) {
+					persisted.add(i);
+				} else {
+					try {
+						setCurrent(stateful, current, next);
+						updated[i] = true;
+					} catch (StaleStateException e) {
+						updated[i] = false;
+					}
+				}
+			}
+
+			for (int from = 0; from < persisted.size(); from += this.maxBatchSize) {
+				List<Integer> chunk = persisted.subList(from, Math.min(from + this.maxBatchSize, persisted.size()));
+				updateStatesInDB(statefuls, chunk, current, next, updated);
+			}
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		} catch (SecurityException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+		return updated;
+	}
+
+	protected PlatformTransactionManager getTransactionManager() {
+		return transactionManager;
+	}
+
+	/**
+	 * Flush the Persistence Context.  In optimistic mode, this is where a State change that conflicts
+	 * with another transaction is detected
+	 *
+	 * @throws StaleStateException thrown if a flushed Entity was changed by another transaction
+	 */
+	public void flush() throws StaleStateException {
+		try {
+			entityManager.flush();
+		} catch(OptimisticLockException e) {
+			logger.warn("Stale State, entity={}", e.getEntity());
+			throw new StaleStateException(e.getMessage());
+		} catch(OptimisticLockingFailureException e) {
+			logger.warn("Stale State", e);
+			throw new StaleStateException(e.getMessage());
+		}
+	}
+
+	public boolean isOptimistic() {
+		return optimistic;
+	}
+
+	/**
+	 * In optimistic mode, the State of a persisted Entity is qualified by its {@link Version} rather than by
+	 * a qualified UPDATE.  The State is changed in memory and written, along with any other change to
+	 * the Entity, when the Persistence Context is flushed.  A conflicting change is reported by
+	 * {@link #flush()} as a StaleStateException, so the Persistence Context must be flushed before the
+	 * transaction commits and the Event applied again in a new transaction.  The JPA FSMHarness does this
+	 * when the StatefulController is optimistic
+	 *
+	 * @param optimistic whether to qualify State changes by the Version of the Entity
+	 */
+	public void setOptimistic(boolean optimistic) {
+		if (optimistic) {
+			if (getReferencedField(getClazz(), Version.class) == null) {
+				throw new RuntimeException("No Version field defined for " + getClazz().getName());
+			}
+			Column column = getStateField().getAnnotation(Column.class);
+			if (column != null && !column.updatable()) {
+				throw new RuntimeException("State field " + getStateField().getName() + " must be updatable in optimistic mode");
+			}
+		}
+		this.optimistic = optimistic;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Set the maximum number of Entities updated by one statement.  Must not exceed the number of
+	 * parameters the database allows in an IN list
+	 *
+	 * @param maxBatchSize maximum number of Entities per statement
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive, maxBatchSize=" + maxBatchSize);
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+
 	/**
 	 * @param stateful
 	 * @param current
@@ -110,8 +240,8 @@ public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>
 			throws NoSuchFieldException, IllegalAccessException,
 			StaleStateException {
 		// The Entity hasn't been persisted to the database - so it exists only
-		// this Application memory.  So, serialize the qualified update to prevent
-		// concurrency conflicts
+		// this Application memory - or its Version guards the State until flushed.
+		// So, serialize the qualified update to prevent concurrency conflicts
 		//
 		synchronized(stateful) {
 			String state = this.getState(stateful);
@@ -147,20 +277,14 @@ public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>
 
 			// If we aren't able to update - it's most likely that we are out of sync.
 			// So, fetch the latest value and update the Stateful object.  Then throw a RetryException
-			// This will cause the event to be reprocessed by the FSM
+			// This will cause the event to be reprocessed by the FSM.  An update which matched no
+			// rows hasn't locked anything, so the read locks the row: the State we refresh the
+			// Entity with can't change before the retried update within this transaction
 			//
-			final Query query = buildQuery(id, stateful);
 			String state = getStartState().getName();
 			try {
-				TransactionTemplate tt = new TransactionTemplate(transactionManager);
-				state =  tt.execute(new TransactionCallback<String>() {
-
-					@Override
-					public String doInTransaction(TransactionStatus status) {
-						return (String) query.getSingleResult();
-					}
-
-				});
+				String dbState = (String)buildQuery(id, stateful).getSingleResult();
+				state = (dbState == null) ? state : dbState;
 			} catch(NoResultException nre) {
 				// This is the first time setting the state, ignore
 				//
@@ -173,60 +297,119 @@ public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>
 		}
 	}
 
-	protected Query buildUpdate(
-			Object id,
-			T stateful,
+	/**
+	 * Reading and locking the rows before updating them, rather than re-reading them afterwards,
+	 * distinguishes an Entity we updated from one another transaction had already moved to the
+	 * next State.  If an id appears more than once, only its first occurrence is transitioned; the
+	 * rest are stale, just as they would be if the Entities had been passed one at a time
+	 */
+	private void updateStatesInDB(
+			List<T> statefuls,
+			List<Integer> chunk,
 			State<T> current,
 			State<T> next,
-			Field idField,
-			Field stateField) throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
+			boolean[] updated) throws NoSuchFieldException, IllegalAccessException {
 
-		CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+		List<Object> ids = new ArrayList<Object>(chunk.size());
+		for (int i : chunk) {
+			ids.add(getId(statefuls.get(i)));
+		}
 
-		// update <class>
+		// Fetch and lock the States of the chunk
 		//
-		CriteriaUpdate<T> cu = cb.createCriteriaUpdate(this.getClazz());
-		Root<T> t = cu.from(this.getClazz());
-
-		Path<?> idPath = t.get(this.getIdField().getName());
-		Path<String> statePath = t.get(this.getStateField().getName());
+		Map<Object, String> states = new HashMap<Object, String>();
+		for (Object row : buildBatchQuery(ids).getResultList()) {
+			Object[] columns = (Object[])row;
+			states.put(columns[0], (String)columns[1]);
+		}
 
-		// set state=<next_state>
+		// Update the Entities that are in the current State
 		//
-		cu.set(statePath, next.getName());
+		Set<Object> matched = new LinkedHashSet<Object>();
+		for (Object id : ids) {
+			if (states.containsKey(id) && current.getName().equals(resolveState(states.get(id)))) {
+				matched.add(id);
+			}
+		}
+		if (!matched.isEmpty()) {
+			buildBatchUpdate(new ArrayList<Object>(matched), current, next).executeUpdate();
+		}
 
-		// where id=<id> and state=<current_state>
+		// Reflect the outcome in the Entities.  Once an id has been transitioned, its State is the next State
 		//
-		Predicate statePredicate = (current.equals(getStartState())) ?
-				cb.or(
-					cb.equal(
-						statePath,
-						current.getName()
-					),
-					cb.equal(
-						statePath,
-						cb.nullLiteral(String.class)
-					)
-				) :
-				cb.equal(
-					statePath,
-					current.getName()
-				);
-
-		cu.where(
-			cb.and(
-				cb.equal(
-					idPath,
-					this.getId(stateful)
-				),
-				statePredicate
-			)
-		);
-
-		Query query = entityManager.createQuery(cu);
-		if (logger.isDebugEnabled()) {
-			logger.debug(query.unwrap(org.hibernate.Query.class).getQueryString());
+		for (int i = 0; i < ids.size(); i++) {
+			T stateful = statefuls.get(chunk.get(i));
+			Object id = ids.get(i);
+			String state = resolveState(states.get(id));
+			if (matched.remove(id)) {
+				setState(stateful, next.getName());
+				updated[chunk.get(i)] = true;
+			} else {
+				if (states.containsKey(id) && state.equals(current.getName())) {
+					state = next.getName();
+				}
+				logger.warn("Stale State, expected={}, actual={}", current.getName(), state);
+				setState(stateful, state);
+				updated[chunk.get(i)] = false;
+			}
 		}
+	}
+
+	/**
+	 * The shared EntityManager delegates each call to the EntityManager bound to the caller's transaction,
+	 * so concurrent transitions each work within their own Persistence Context
+	 */
+	private static EntityManager createSharedEntityManager(EntityManagerFactoryInfo entityManagerFactory) {
+
+		// Transactions are bound to the Spring proxy of the factory, so prefer it over the native factory
+		//
+		EntityManagerFactory emf = (entityManagerFactory instanceof EntityManagerFactory) ?
+				(EntityManagerFactory)entityManagerFactory :
+				entityManagerFactory.getNativeEntityManagerFactory();
+		return SharedEntityManagerCreator.createSharedEntityManager(emf);
+	}
+
+	private String resolveState(String state) {
+		return (state == null) ? getStartState().getName() : state;
+	}
+
+	protected Query buildBatchQuery(List<Object> ids) {
+		Query query = entityManager.createQuery(getStatements().batchSelect);
+		query.setParameter("ids", ids);
+		query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+		return query;
+	}
+
+	protected Query buildBatchUpdate(List<Object> ids, State<T> current, State<T> next) {
+		Statements statements = getStatements();
+		Query query = entityManager.createQuery(
+				(current.equals(getStartState())) ?
+						statements.batchUpdateFromStart :
+						statements.batchUpdate);
+		query.setParameter("next", next.getName());
+		query.setParameter("ids", ids);
+		query.setParameter("current", current.getName());
+		return query;
+	}
+
+	protected Query buildUpdate(
+			Object id,
+			T stateful,
+			State<T> current,
+			State<T> next,
+			Field idField,
+			Field stateField) throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
+
+		// update <class> set state=<next_state> where id=<id> and state=<current_state>
+		//
+		Statements statements = getStatements();
+		Query query = entityManager.createQuery(
+				(current.equals(getStartState())) ?
+						statements.updateFromStart :
+						statements.update);
+		query.setParameter("next", next.getName());
+		query.setParameter("id", id);
+		query.setParameter("current", current.getName());
 		return query;
 	}
 
@@ -251,22 +434,55 @@ public class JPAPerister<T> extends AbstractPersister<T> implements Persister<T>
 	}
 
 	private Query buildQuery(Object id, T stateful) throws SecurityException, IllegalArgumentException, NoSuchFieldException, IllegalAccessException {
+		Query query = entityManager.createQuery(getStatements().selectState);
+		query.setParameter("id", id);
+		query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+		return query;
+	}
 
-		CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
-		CriteriaQuery<String> cq = cb.createQuery(String.class);
-
-		Root<T> t = cq.from(this.getClazz());
-		Path<?> idPath = t.get(this.getIdField().getName());
-		Path<String> statePath = t.get(this.getStateField().getName());
-
-		cq.select(statePath);
-
-		cq.where(cb.equal(idPath, this.getId(stateful)));
+	/**
+	 * The statements are only built once, so Hibernate renders each one once and
+	 * finds its plan in the query plan cache thereafter
+	 */
+	private Statements getStatements() {
+		Statements statements = this.statements;
+		if (statements == null) {
+			statements = new Statements(
+					entityManager.getMetamodel().entity(getClazz()).getName(),
+					getIdField().getName(),
+					getStateField().getName());
+			this.statements = statements;
+		}
+		return statements;
+	}
 
-		Query query = entityManager.createQuery(cq);
-		if (logger.isDebugEnabled()) {
-			logger.debug(query.unwrap(org.hibernate.Query.class).getQueryString());
+	/**
+	 * The JPQL statements issued for an Entity class
+	 */
+	private static class Statements {
+
+		private final String update;
+		private final String updateFromStart;
+		private final String selectState;
+		private final String batchSelect;
+		private final String batchUpdate;
+		private final String batchUpdateFromStart;
+
+		private Statements(String entity, String id, String state) {
+			String update = "update " + entity + " t set t." + state + " = :next where ";
+			String current = "t." + state + " = :current";
+			String currentOrStart = "(t." + state + " = :current or t." + state + " is null)";
+
+			this.update = update + "t." + id + " = :id and " + current;
+			this.updateFromStart = update + "t." + id + " = :id and " + currentOrStart;
+			this.selectState = "select t." + state + " from " + entity + " t where t." + id + " = :id";
+			this.batchSelect = "select t." + id + ", t." + state + " from " + entity + " t where t." + id + " in :ids";
+			this.batchUpdate = update + "t." + id + " in :ids and " + current;
+			this.batchUpdateFromStart = update + "t." + id + " in :ids and " + currentOrStart;
+
+			if (logger.isDebugEnabled()) {
+				logger.debug("{}: {}, {}, {}", entity, this.update, this.updateFromStart, this.selectState);
+			}
 		}
-		return query;
 	}
 }
@@ -20,6 +20,7 @@ package org.statefulj.persistence.jpa;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 
 import javax.annotation.Resource;
 
@@ -28,6 +29,7 @@ import org.junit.runner.RunWith;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.statefulj.fsm.BatchPersister;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
@@ -123,4 +125,101 @@ public class JPAPersisterTest {
 		jpaPersister.setCurrent(order, stateB, stateC);
 		UnitTestUtils.commitTransaction(transactionManager);
 	}
+
+	@Test
+	public void testBatchStateChange() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		Order order1 = orderRepo.save(new Order());
+		Order order2 = orderRepo.save(new Order());
+		Order order3 = orderRepo.save(new Order());
+		Order unsaved = new Order();
+		jpaPersister.setCurrent(order2, stateA, stateB);
+
+		boolean[] updated = ((BatchPersister<Order>)jpaPersister).setCurrent(
+				Arrays.asList(order1, order2, order3, unsaved),
+				stateA,
+				stateC);
+
+		assertTrue(updated[0]);
+		assertFalse(updated[1]);
+		assertTrue(updated[2]);
+		assertTrue(updated[3]);
+
+		assertEquals(stateC.getName(), order1.getState());
+		assertEquals(stateB.getName(), order2.getState());
+		assertEquals(stateC.getName(), unsaved.getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		assertEquals(stateC.getName(), orderRepo.findOne(order1.getId()).getState());
+		assertEquals(stateB.getName(), orderRepo.findOne(order2.getId()).getState());
+		assertEquals(stateC.getName(), orderRepo.findOne(order3.getId()).getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testBatchDuplicateIds() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		Order order = orderRepo.save(new Order());
+
+		// Only the first occurrence of an Entity is transitioned
+		//
+		boolean[] updated = ((BatchPersister<Order>)jpaPersister).setCurrent(
+				Arrays.asList(order, order),
+				stateA,
+				stateB);
+
+		assertTrue(updated[0]);
+		assertFalse(updated[1]);
+		assertEquals(stateB.getName(), order.getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test
+	public void testStateChangeFromStartState() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		// An Order persisted without a State is in the Start State
+		//
+		Order order = orderRepo.save(new Order());
+		assertNull(order.getState());
+		jpaPersister.setCurrent(order, stateA, stateB);
+		assertEquals(stateB.getName(), order.getState());
+
+		// An Order persisted in another State isn't updated from the Start State
+		//
+		Order moved = new Order();
+		jpaPersister.setCurrent(moved, stateA, stateB);
+		moved = orderRepo.save(moved);
+		try {
+			jpaPersister.setCurrent(moved, stateA, stateC);
+			fail("Expected StaleStateException");
+		} catch(StaleStateException e) {
+		}
+		assertEquals(stateB.getName(), moved.getState());
+
+		// An Order persisted without a State is only updated from the Start State
+		//
+		Order unset = orderRepo.save(new Order());
+		try {
+			jpaPersister.setCurrent(unset, stateB, stateC);
+			fail("Expected StaleStateException");
+		} catch(StaleStateException e) {
+		}
+		assertEquals(stateA.getName(), unset.getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		assertEquals(stateB.getName(), orderRepo.findOne(order.getId()).getState());
+		assertEquals(stateB.getName(), orderRepo.findOne(moved.getId()).getState());
+		assertNull(orderRepo.findOne(unset.getId()).getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
 }
@@ -129,4 +129,33 @@ public class EmbeddedJPAPersisterTest {
 		embeddedJPAPersister.setCurrent(order, stateB, stateC);
 		UnitTestUtils.commitTransaction(transactionManager);
 	}
+
+	@Test
+	public void testStaleStateChange() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		// The Order is managed, so its State is updated, and re-read when stale, by its embedded id
+		//
+		EmbeddedOrderId id = new EmbeddedOrderId();
+		id.setId(3L);
+		EmbeddedOrder order = this.embeddedOrderRepo.save(new EmbeddedOrder(id));
+		embeddedJPAPersister.setCurrent(order, stateA, stateB);
+		assertEquals(stateB.getName(), order.getState());
+
+		try {
+			embeddedJPAPersister.setCurrent(order, stateA, stateC);
+			fail("Expected StaleStateException");
+		} catch(StaleStateException e) {
+		}
+		assertEquals(stateB.getName(), order.getState());
+
+		embeddedJPAPersister.setCurrent(order, stateB, stateC);
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		assertEquals(stateC.getName(), embeddedOrderRepo.findOne(order.getOrderId()).getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
 }
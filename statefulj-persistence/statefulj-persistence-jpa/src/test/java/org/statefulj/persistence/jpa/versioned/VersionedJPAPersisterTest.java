@@ -0,0 +1,142 @@
+/***
+ * 
+ * Copyright 2014 Andrew Hall
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package org.statefulj.persistence.jpa.versioned;
+
+import static org.junit.Assert.*;
+
+import javax.annotation.Resource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.statefulj.fsm.StaleStateException;
+import org.statefulj.fsm.model.State;
+import org.statefulj.persistence.jpa.JPAPerister;
+import org.statefulj.persistence.jpa.utils.UnitTestUtils;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({"/applicationContext-JPAPersisterTests.xml"})
+public class VersionedJPAPersisterTest {
+
+	@Resource
+	JPAPerister<VersionedOrder> versionedJPAPersister;
+
+	@Resource
+	VersionedOrderRepository versionedOrderRepo;
+
+	@Resource
+	JpaTransactionManager transactionManager;
+
+	@Resource
+	State<VersionedOrder> stateA;
+
+	@Resource
+	State<VersionedOrder> stateB;
+
+	@Resource
+	State<VersionedOrder> stateC;
+
+	@Test
+	public void testValidStateChange() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+
+		VersionedOrder order = new VersionedOrder();
+		order.setAmount(20);
+		order = this.versionedOrderRepo.save(order);
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		// Verify that the State and the Action's changes are written together, qualified by the Version
+		//
+		order = this.versionedOrderRepo.findOne(order.getId());
+		long version = order.getVersion();
+		assertEquals(stateA, versionedJPAPersister.getCurrent(order));
+
+		versionedJPAPersister.setCurrent(order, stateA, stateB);
+		order.setAmount(100);
+		assertEquals(stateB.getName(), order.getState());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+		UnitTestUtils.startTransaction(transactionManager);
+
+		VersionedOrder dbOrder = this.versionedOrderRepo.findOne(order.getId());
+		assertEquals(stateB.getName(), dbOrder.getState());
+		assertEquals(100, dbOrder.getAmount());
+		assertEquals(version + 1, dbOrder.getVersion());
+
+		UnitTestUtils.commitTransaction(transactionManager);
+	}
+
+	@Test(expected=StaleStateException.class)
+	public void testConcurrentStateChange() throws StaleStateException, InterruptedException {
+		UnitTestUtils.startTransaction(transactionManager);
+		final long id = this.versionedOrderRepo.save(new VersionedOrder()).getId();
+		UnitTestUtils.commitTransaction(transactionManager);
+
+		UnitTestUtils.startTransaction(transactionManager);
+		try {
+			VersionedOrder order = this.versionedOrderRepo.findOne(id);
+			versionedJPAPersister.setCurrent(order, stateA, stateB);
+
+			// Another transaction changes the Order before this one is flushed
+			//
+			Thread competitor = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					UnitTestUtils.startTransaction(transactionManager);
+					try {
+						VersionedOrder order = versionedOrderRepo.findOne(id);
+						versionedJPAPersister.setCurrent(order, stateA, stateC);
+						UnitTestUtils.commitTransaction(transactionManager);
+					} catch(StaleStateException e) {
+						UnitTestUtils.rollbackTransaction(transactionManager);
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			competitor.start();
+			competitor.join();
+
+			versionedJPAPersister.flush();
+		} finally {
+			UnitTestUtils.rollbackTransaction(transactionManager);
+
+			UnitTestUtils.startTransaction(transactionManager);
+			assertEquals(stateC.getName(), this.versionedOrderRepo.findOne(id).getState());
+			UnitTestUtils.commitTransaction(transactionManager);
+		}
+	}
+
+	@Test(expected=StaleStateException.class)
+	public void testInvalidStateChange() throws StaleStateException {
+		UnitTestUtils.startTransaction(transactionManager);
+		VersionedOrder order = this.versionedOrderRepo.save(new VersionedOrder());
+
+		assertEquals(stateA, versionedJPAPersister.getCurrent(order));
+
+		try {
+			versionedJPAPersister.setCurrent(order, stateB, stateC);
+		} finally {
+			UnitTestUtils.rollbackTransaction(transactionManager);
+		}
+	}
+}
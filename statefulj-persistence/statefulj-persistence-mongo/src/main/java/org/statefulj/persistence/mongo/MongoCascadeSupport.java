@@ -31,6 +31,17 @@ class MongoCascadeSupport<T> extends AbstractMongoEventListener<Object> {
 		this.persister = persister;
 	}
 	
+	/**
+	 * Pass the Convert event to the MongoPersister to create an embedded StateDocument
+	 *
+	 * (non-Javadoc)
+	 * @see org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener#onBeforeConvert(java.lang.Object)
+	 */
+	@Override
+	public void onBeforeConvert(Object source) {
+		this.persister.onBeforeConvert(source);
+	}
+
 	/**
 	 * Pass the Save event to the MongoPersister to cascade to the StateDocument
 	 * 
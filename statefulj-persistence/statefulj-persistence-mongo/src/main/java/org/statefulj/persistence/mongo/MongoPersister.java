@@ -18,6 +18,7 @@
 
 package org.statefulj.persistence.mongo;
 
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBObject;
 import org.bson.types.ObjectId;
 import org.springframework.beans.BeansException;
@@ -30,13 +31,25 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.statefulj.fsm.AsyncPersister;
+import org.statefulj.fsm.BatchPersister;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
@@ -45,8 +58,20 @@ import org.statefulj.persistence.mongo.model.StateDocument;
 
 import javax.persistence.EmbeddedId;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Random;
 
 import static org.statefulj.common.utils.ReflectionUtils.getReferencedField;
@@ -55,11 +80,24 @@ public class MongoPersister<T>
 			extends AbstractPersister<T>
 			implements
 				Persister<T>,
+				BatchPersister<T>,
+				AsyncPersister<T>,
 				BeanDefinitionRegistryPostProcessor,
-				ApplicationContextAware {
+				ApplicationContextAware,
+				ApplicationListener<ContextRefreshedEvent> {
 
 	final static FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
 
+	private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	private boolean ensureIndexes = true;
+
+	private boolean inline = false;
+
+	private Executor executor;
+
 	private ApplicationContext appContext;
 
 	private String repoId;
@@ -151,6 +189,45 @@ public class MongoPersister<T>
 		this.appContext = applicationContext;
 	}
 
+	/**
+	 * Ensure the indexes on the StateDocument collection once the Application Context has started
+	 */
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		if (this.ensureIndexes && event.getApplicationContext() == this.appContext) {
+			ensureIndexes();
+		}
+	}
+
+	/**
+	 * Ensure the StateDocument collection is indexed for the removal of the StateDocument of a deleted Entity,
+	 * and for queries by State.  Embedded StateDocuments aren't stored in the StateDocument collection, so there
+	 * is nothing to index
+	 */
+	public void ensureIndexes() {
+		if (!isInline()) {
+			IndexOperations indexOps = getMongoTemplate().indexOps(StateDocumentImpl.class);
+			indexOps.ensureIndex(new Index()
+					.on("managedCollection", Direction.ASC)
+					.on("managedField", Direction.ASC)
+					.on("managedId", Direction.ASC));
+			indexOps.ensureIndex(new Index()
+					.on("state", Direction.ASC)
+					.on("updated", Direction.ASC));
+		}
+	}
+
+	public boolean isEnsureIndexes() {
+		return ensureIndexes;
+	}
+
+	/**
+	 * @param ensureIndexes whether to ensure the indexes on the StateDocument collection at startup
+	 */
+	public void setEnsureIndexes(boolean ensureIndexes) {
+		this.ensureIndexes = ensureIndexes;
+	}
+
 	/**
 	 * Set the current State.  This method will ensure that the state in the db matches the expected current state.
 	 * If not, it will throw a StateStateException
@@ -171,7 +248,11 @@ public class MongoPersister<T>
 
 				// Update state in the DB
 				//
-				updateStateInDB(stateful, current, next, stateDoc);
+				if (isInline()) {
+					updateInlineStateInDB(stateful, current, next);
+				} else {
+					updateStateInDB(stateful, current, next, stateDoc);
+				}
 			} else {
 
 				// The Entity hasn't been persisted to Mongo - so it exists only
@@ -191,6 +272,119 @@ public class MongoPersister<T>
 		}
 	}
 
+	/**
+	 * Set the current State of a batch of Stateful Entities.  Persisted Entities are updated in chunks of
+	 * {@link #getMaxBatchSize()} with a single unordered bulk write of qualified updates.  If any update
+	 * of a chunk didn't match, the States of the chunk are fetched with a single query, and the Stale
+	 * Entities are refreshed with them
+	 *
+	 * @param statefuls Stateful Entities
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return For each Stateful Entity, in order, whether its State was updated
+	 */
+	@Override
+	public boolean[] setCurrent(List<T> statefuls, State<T> current, State<T> next) {
+		boolean[] updated = new boolean[statefuls.size()];
+
+		try {
+			List<Integer> persisted = new ArrayList<Integer>(statefuls.size());
+			for (int i = 0; i < updated.length; i++) {
+				T stateful = statefuls.get(i);
+				StateDocumentImpl stateDoc = this.getStateDocument(stateful);
+				if (stateDoc != null && stateDoc.isPersisted()) {
+					persisted.add(i);
+				} else {
+					try {
+						setCurrent(stateful, current, next);
+						updated[i] = true;
+					} catch (StaleStateException e) {
+						updated[i] = false;
+					}
+				}
+			}
+
+			for (int from = 0; from < persisted.size(); from += this.maxBatchSize) {
+				List<Integer> chunk = persisted.subList(from, Math.min(from + this.maxBatchSize, persisted.size()));
+				updateStatesInDB(statefuls, chunk, current, next, updated);
+			}
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		} catch (SecurityException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+		return updated;
+	}
+
+	/**
+	 * Set the current State on the {@link #getExecutor() Executor}.  The Mongo driver has no non-blocking API,
+	 * so this only offloads the update: it still blocks a thread, but one of the Executor's rather than the
+	 * caller's.  The stage completes, and the Action of an asynchronous Event runs, on that thread
+	 *
+	 * @param stateful Stateful Entity
+	 * @param current Expected current State
+	 * @param next The value of the next State
+	 * @return A stage completed once the State is updated, or completed exceptionally with a StaleStateException
+	 */
+	@Override
+	public CompletionStage<Void> setCurrentAsync(final T stateful, final State<T> current, final State<T> next) {
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		Runnable update = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					setCurrent(stateful, current, next);
+					future.complete(null);
+				} catch(Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		};
+		try {
+			getExecutor().execute(update);
+		} catch(RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * @return The Executor on which {@link #setCurrentAsync(Object, State, State)} updates the State.  If one
+	 * hasn't been set, a bounded pool of daemon threads shared by all MongoPersisters is returned
+	 */
+	public Executor getExecutor() {
+		return (this.executor != null) ? this.executor : SharedExecutor.INSTANCE;
+	}
+
+	/**
+	 * @param executor The Executor on which {@link #setCurrentAsync(Object, State, State)} updates the State,
+	 * or null to use the pool shared by all MongoPersisters
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Set the maximum number of Entities updated by one bulk write
+	 *
+	 * @param maxBatchSize maximum number of Entities per bulk write
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive, maxBatchSize=" + maxBatchSize);
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+
 	/**
 	 * @param stateful
 	 * @param current
@@ -235,6 +429,173 @@ public class MongoPersister<T>
 		}
 	}
 
+	/**
+	 * The StateDocument is embedded in the Entity's document, so perform the qualified update
+	 * against the Entity's document, fetching back only the StateDocument
+	 */
+	private void updateInlineStateInDB(T stateful, State<T> current, State<T> next)
+			throws IllegalAccessException, NoSuchFieldException, StaleStateException {
+		Object id = this.getId(stateful);
+		String stateField = this.getStateField().getName();
+
+		Query query = Query.query(new Criteria("_id").is(id).and(stateField + ".state").is(current.getName()));
+		query.fields().include(stateField);
+		T updated = getMongoTemplate().findAndModify(query, buildUpdate(stateField + ".", current, next, Calendar.getInstance().getTime()), RETURN_NEW, getClazz());
+
+		if (updated != null) {
+			setStateDocument(stateful, this.getStateDocument(updated));
+		} else {
+
+			// Out of sync, fetch the latest StateDocument and have the FSM reprocess the event
+			//
+			query = Query.query(new Criteria("_id").is(id));
+			query.fields().include(stateField);
+			updated = getMongoTemplate().findOne(query, getClazz());
+			StateDocumentImpl updatedDoc = (updated != null) ? this.getStateDocument(updated) : null;
+
+			if (updatedDoc != null) {
+				String currentState = this.getStateDocument(stateful).getState();
+				setStateDocument(stateful, updatedDoc);
+				throwStaleState(currentState, updatedDoc.getState());
+			} else {
+				throw new RuntimeException("Unable to find " + getClazz().getName() + " with id=" + id);
+			}
+		}
+	}
+
+	/**
+	 * The bulk write only reports how many updates matched.  So every update of the chunk is stamped with
+	 * the same updated time, which identifies the States this chunk changed when some of them didn't match.
+	 * An Entity which occurs more than once is only updated for its first occurrence; the others are stale
+	 * once it has been transitioned, as with {@link #setCurrent(Object, State, State)}
+	 */
+	private void updateStatesInDB(
+			List<T> statefuls,
+			List<Integer> chunk,
+			State<T> current,
+			State<T> next,
+			boolean[] updated) throws IllegalAccessException, NoSuchFieldException {
+
+		boolean inline = isInline();
+		String prefix = (inline) ? this.getStateField().getName() + "." : "";
+		Class<?> type = (inline) ? getClazz() : StateDocumentImpl.class;
+
+		// Key each Entity by the id of the document holding its State, and note the first occurrence of each key
+		//
+		List<Object> keys = new ArrayList<Object>(chunk.size());
+		Map<Object, Integer> firsts = new LinkedHashMap<Object, Integer>();
+		for (int j = 0; j < chunk.size(); j++) {
+			T stateful = statefuls.get(chunk.get(j));
+			Object key = (inline) ? this.getId(stateful) : this.getStateDocument(stateful).getId();
+			keys.add(key);
+			if (!firsts.containsKey(key)) {
+				firsts.put(key, j);
+			}
+		}
+
+		// Perform the qualified updates with a single bulk write
+		//
+		Date stamp = Calendar.getInstance().getTime();
+		MongoConverter converter = getMongoTemplate().getConverter();
+		MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(type);
+		QueryMapper queryMapper = new QueryMapper(converter);
+		DBObject update = new UpdateMapper(converter).getMappedObject(
+				buildUpdate(prefix, current, next, stamp).getUpdateObject(),
+				entity);
+
+		BulkWriteOperation bulk = getMongoTemplate()
+				.getCollection(getMongoTemplate().getCollectionName(type))
+				.initializeUnorderedBulkOperation();
+		for (Object key : firsts.keySet()) {
+			Query query = Query.query(new Criteria("_id").is(key).and(prefix + "state").is(current.getName()));
+			bulk.find(queryMapper.getMappedObject(query.getQueryObject(), entity)).updateOne(update);
+		}
+		boolean allMatched = (bulk.execute().getMatchedCount() == firsts.size());
+
+		// Reflect the outcome in the Entities
+		//
+		Map<Object, StateDocumentImpl> stateDocs = (allMatched) ? null : findStateDocs(new ArrayList<Object>(firsts.keySet()), inline);
+		for (int j = 0; j < keys.size(); j++) {
+			if (firsts.get(keys.get(j)) != j) {
+				continue;
+			}
+			T stateful = statefuls.get(chunk.get(j));
+			if (allMatched) {
+				StateDocumentImpl stateDoc = this.getStateDocument(stateful);
+				stateDoc.setPrevState(current.getName());
+				stateDoc.setState(next.getName());
+				stateDoc.setUpdated(stamp);
+				stateDoc.setVersion(stateDoc.getVersion() + 1);
+				updated[chunk.get(j)] = true;
+			} else {
+				StateDocumentImpl stateDoc = stateDocs.get(keys.get(j));
+				if (stateDoc != null) {
+					setStateDocument(stateful, stateDoc);
+					updated[chunk.get(j)] =
+							next.getName().equals(stateDoc.getState()) &&
+							current.getName().equals(stateDoc.getPrevState()) &&
+							stamp.equals(stateDoc.getUpdated());
+				} else {
+					updated[chunk.get(j)] = false;
+				}
+			}
+		}
+
+		// Refresh the later occurrences from the first
+		//
+		for (int j = 0; j < keys.size(); j++) {
+			int first = firsts.get(keys.get(j));
+			if (first != j) {
+				StateDocumentImpl from = this.getStateDocument(statefuls.get(chunk.get(first)));
+				StateDocumentImpl to = this.getStateDocument(statefuls.get(chunk.get(j)));
+				if (from != to) {
+					to.setPrevState(from.getPrevState());
+					to.setState(from.getState());
+					to.setUpdated(from.getUpdated());
+					to.setVersion(from.getVersion());
+				}
+				updated[chunk.get(j)] = false;
+			}
+		}
+	}
+
+	/**
+	 * Blocking updates of setCurrentAsync, when no Executor has been set.  The threads mostly wait on Mongo,
+	 * so there are more of them than processors
+	 */
+	private static class SharedExecutor {
+
+		private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+				2 * Runtime.getRuntime().availableProcessors(),
+				new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "statefulj-mongo-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	private Map<Object, StateDocumentImpl> findStateDocs(List<Object> keys, boolean inline) throws IllegalAccessException, NoSuchFieldException {
+		Map<Object, StateDocumentImpl> stateDocs = new HashMap<Object, StateDocumentImpl>();
+		Query query = Query.query(new Criteria("_id").in(keys));
+		if (inline) {
+			query.fields().include(this.getStateField().getName());
+			for (T stateful : getMongoTemplate().find(query, getClazz())) {
+				stateDocs.put(this.getId(stateful), this.getStateDocument(stateful));
+			}
+		} else {
+			for (StateDocumentImpl stateDoc : getMongoTemplate().find(query, StateDocumentImpl.class)) {
+				stateDocs.put(stateDoc.getId(), stateDoc);
+			}
+		}
+		return stateDocs;
+	}
+
 	@Override
 	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
 	}
@@ -298,13 +659,39 @@ public class MongoPersister<T>
 	}
 
 	protected Update buildUpdate(State<T> current, State<T> next) {
+		return buildUpdate("", current, next, Calendar.getInstance().getTime());
+	}
+
+	protected Update buildUpdate(String prefix, State<T> current, State<T> next, Date updated) {
 		Update update = new Update();
-		update.set("prevState", current.getName());
-		update.set("state", next.getName());
-		update.set("updated", Calendar.getInstance().getTime());
+		update.set(prefix + "prevState", current.getName());
+		update.set(prefix + "state", next.getName());
+		update.set(prefix + "updated", updated);
+		update.inc(prefix + "version", 1);
 		return update;
 	}
 
+	/**
+	 * @return true if the StateDocument is embedded within the Entity's document
+	 */
+	public boolean isInline() {
+		return inline;
+	}
+
+	/**
+	 * In inline mode, the StateDocument is embedded within the Entity's document.  A transition is then a
+	 * single update of the Entity's document, and there is no separate StateDocument to save or remove.
+	 * The State field must not be a DBRef
+	 *
+	 * @param inline whether the StateDocument is embedded within the Entity's document
+	 */
+	public void setInline(boolean inline) {
+		if (inline && this.getStateField().isAnnotationPresent(DBRef.class)) {
+			throw new RuntimeException("State field " + this.getStateField().getName() + " can't be a DBRef in inline mode");
+		}
+		this.inline = inline;
+	}
+
 	protected String getState(T stateful) throws NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException {
 		StateDocumentImpl stateDoc = this.getStateDocument(stateful);
 		return (stateDoc != null) ? stateDoc.getState() : getStartState().getName();
@@ -321,7 +708,7 @@ public class MongoPersister<T>
 	}
 
 	protected StateDocumentImpl getStateDocument(T stateful) throws IllegalArgumentException, IllegalAccessException {
-		Object stateDoc = getStateField().get(stateful);
+		Object stateDoc = getStateAccessor().get(stateful);
 		if (stateDoc instanceof LazyLoadingProxy) {
 			stateDoc = ((LazyLoadingProxy)stateDoc).getTarget();
 		}
@@ -331,16 +718,18 @@ public class MongoPersister<T>
 	protected StateDocumentImpl createStateDocument(T stateful) throws IllegalArgumentException, IllegalAccessException, SecurityException, NoSuchFieldException {
 		StateDocumentImpl stateDoc = new StateDocumentImpl();
 		stateDoc.setPersisted(false);
-		stateDoc.setId(new ObjectId().toHexString());
 		stateDoc.setState(getStartState().getName());
-		stateDoc.setManagedCollection(getMongoTemplate().getCollectionName(stateful.getClass()));
-		stateDoc.setManagedField(this.getStateField().getName());
+		if (!isInline()) {
+			stateDoc.setId(new ObjectId().toHexString());
+			stateDoc.setManagedCollection(getMongoTemplate().getCollectionName(stateful.getClass()));
+			stateDoc.setManagedField(this.getStateField().getName());
+		}
 		setStateDocument(stateful, stateDoc);
 		return stateDoc;
 	}
 
 	protected void setStateDocument(T stateful, StateDocument stateDoc) throws IllegalArgumentException, IllegalAccessException {
-		getStateField().set(stateful, stateDoc);
+		getStateAccessor().set(stateful, stateDoc);
 	}
 
 	protected void updateInMemory(T stateful, StateDocumentImpl stateDoc, String current, String next) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException, StaleStateException {
@@ -379,6 +768,32 @@ public class MongoPersister<T>
 		return (StateDocumentImpl)getMongoTemplate().findById(id, StateDocumentImpl.class);
 	}
 
+	@SuppressWarnings("unchecked")
+	/***
+	 * Create the StateDocument before the Stateful Document is converted, so that an embedded
+	 * StateDocument, or the DBRef to a StateDocument, is written by the first save
+	 *
+	 * @param stateful
+	 */
+	void onBeforeConvert(Object stateful) {
+		if (getClazz().isAssignableFrom(stateful.getClass())) {
+			try {
+				if (this.getStateDocument((T)stateful) == null) {
+					StateDocumentImpl stateDoc = createStateDocument((T)stateful);
+					stateDoc.setUpdated(Calendar.getInstance().getTime());
+				}
+			} catch (IllegalArgumentException e) {
+				throw new RuntimeException(e);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			} catch (SecurityException e) {
+				throw new RuntimeException(e);
+			} catch (NoSuchFieldException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	/***
 	 * Cascade the Save to the StateDocument
@@ -395,8 +810,17 @@ public class MongoPersister<T>
 				boolean updateStateful = false;
 				StateDocumentImpl stateDoc = this.getStateDocument((T)stateful);
 
-				// If the StatefulDocument doesn't have an associated StateDocument, then
-				// we need to create a new StateDocument - save the StateDocument and save the
+				// An embedded StateDocument was saved along with the Stateful Document
+				//
+				if (isInline()) {
+					if (stateDoc != null) {
+						stateDoc.setPersisted(true);
+					}
+					return;
+				}
+
+				// The StateDocument is normally created before the Stateful Document is converted.
+				// If not, create a new StateDocument - save the StateDocument and save the
 				// Stateful Document again so that they both valid DBRef objects
 				//
 				if (stateDoc == null) {
@@ -426,7 +850,7 @@ public class MongoPersister<T>
 	}
 
 	void onAfterDelete(Class<?> stateful, DBObject obj) {
-		if (stateful != null && getClazz().isAssignableFrom(stateful)) {
+		if (stateful != null && getClazz().isAssignableFrom(stateful) && !isInline()) {
 			Criteria criteria = new Criteria("managedId").is(obj.get(this.getIdField().getName())).
 					and("managedCollection").is(getMongoTemplate().getCollectionName(getClazz())).
 					and("managedField").is(this.getStateField().getName());
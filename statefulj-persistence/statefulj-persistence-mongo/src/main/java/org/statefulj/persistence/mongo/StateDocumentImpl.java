@@ -40,6 +40,8 @@ class StateDocumentImpl implements StateDocument {
 	String prevState;
 	
 	Date updated;
+
+	long version;
 	
 	String managedCollection;
 	
@@ -91,6 +93,15 @@ class StateDocumentImpl implements StateDocument {
 		this.updated = updated;
 	}
 
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	@Override
 	public String getManagedCollection() {
 		return managedCollection;
@@ -33,6 +33,13 @@ public interface StateDocument {
 	String getPrevState();
 	
 	Date getUpdated();
+
+	/**
+	 * @return The number of times the State has been changed
+	 */
+	default long getVersion() {
+		return 0;
+	}
 	
 	String getManagedCollection();
 
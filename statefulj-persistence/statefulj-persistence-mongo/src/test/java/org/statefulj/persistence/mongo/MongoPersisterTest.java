@@ -20,6 +20,14 @@ package org.statefulj.persistence.mongo;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import javax.annotation.Resource;
 
@@ -28,13 +36,18 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.statefulj.fsm.BatchPersister;
 import org.statefulj.fsm.Persister;
 import org.statefulj.fsm.StaleStateException;
 import org.statefulj.fsm.model.State;
 import org.statefulj.persistence.mongo.model.StateDocument;
 
+import com.mongodb.DBObject;
+import com.mongodb.DBRef;
+
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration({"/applicationContext-MongoPersisterTests.xml"})
 public class MongoPersisterTest {
@@ -45,8 +58,14 @@ public class MongoPersisterTest {
 	@Resource
 	private MongoPersister<JPAIdEntity> jpaIdPersister;
 	
+	@Resource
+	private MongoPersister<InlineOrder> inlinePersister;
+
 	@Resource
 	private OrderRepository orderRepo;
+
+	@Resource
+	private InlineOrderRepository inlineOrderRepo;
 	
 	@Resource
 	private State<Order> stateA;
@@ -150,6 +169,171 @@ public class MongoPersisterTest {
 		assertNull(state);
 	}
 
+	@Test
+	public void testStateDocumentReferencedOnInsert() {
+		Order order = new Order();
+		order.setAmount(20);
+		order = orderRepo.save(order);
+
+		// Verify that the first save of the Order wrote the DBRef to its StateDocument
+		//
+		DBObject dbo = this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(Order.class)).findOne();
+		assertTrue(dbo.get("state") instanceof DBRef);
+		assertEquals(order.getStateDocument().getId(), ((DBRef)dbo.get("state")).getId().toString());
+		assertNotNull(this.mongoTemplate.findById(order.getStateDocument().getId(), StateDocumentImpl.class));
+	}
+
+	@Test
+	public void testInlineStateChange() throws StaleStateException {
+		InlineOrder order = new InlineOrder();
+		order.setAmount(20);
+		order = this.inlineOrderRepo.save(order);
+
+		// Verify that the State is embedded in the Order's document
+		//
+		assertNotNull(order.getStateDocument());
+		assertEquals(0, this.mongoTemplate.getCollection(StateDocumentImpl.COLLECTION).count());
+		assertEquals(stateA.getName(), this.inlinePersister.getCurrent(order).getName());
+
+		this.inlinePersister.setCurrent(order, stateA, stateB);
+		assertEquals(stateB.getName(), order.getStateDocument().getState());
+		assertEquals(stateA.getName(), order.getStateDocument().getPrevState());
+		assertEquals(1, order.getStateDocument().getVersion());
+
+		InlineOrder dbOrder = this.inlineOrderRepo.findOne(order.getId());
+		assertEquals(stateB.getName(), dbOrder.getStateDocument().getState());
+		assertEquals(20, dbOrder.getAmount());
+
+		// Verify that a stale State is refreshed from the Order's document
+		//
+		try {
+			this.inlinePersister.setCurrent(dbOrder, stateA, stateC);
+			fail("Expected a StaleStateException");
+		} catch(StaleStateException e) {
+			assertEquals(stateB.getName(), dbOrder.getStateDocument().getState());
+		}
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testInlineRejectsDBRef() {
+
+		// The Order references its StateDocument, so it can't be embedded
+		//
+		assertFalse(((MongoPersister<Order>)this.mongoPersister).isInline());
+		((MongoPersister<Order>)this.mongoPersister).setInline(true);
+	}
+
+	@Test
+	public void testBatchStateChange() throws StaleStateException {
+		Order order1 = orderRepo.save(new Order());
+		Order order2 = orderRepo.save(new Order());
+		Order order3 = orderRepo.save(new Order());
+		Order unsaved = new Order();
+		mongoPersister.setCurrent(order2, stateA, stateB);
+
+		boolean[] updated = ((BatchPersister<Order>)mongoPersister).setCurrent(
+				Arrays.asList(order1, order2, order3, unsaved),
+				stateA,
+				stateC);
+
+		assertTrue(updated[0]);
+		assertFalse(updated[1]);
+		assertTrue(updated[2]);
+		assertTrue(updated[3]);
+
+		assertEquals(stateC.getName(), order1.getStateDocument().getState());
+		assertEquals(stateB.getName(), order2.getStateDocument().getState());
+		assertEquals(stateC.getName(), unsaved.getStateDocument().getState());
+
+		assertEquals(stateC.getName(), orderRepo.findOne(order1.getId()).getStateDocument().getState());
+		assertEquals(stateB.getName(), orderRepo.findOne(order2.getId()).getStateDocument().getState());
+		assertEquals(stateC.getName(), orderRepo.findOne(order3.getId()).getStateDocument().getState());
+
+		// Verify that a batch where every update matches is applied in memory
+		//
+		updated = ((BatchPersister<Order>)mongoPersister).setCurrent(Arrays.asList(order1, order3), stateC, stateB);
+		assertTrue(updated[0]);
+		assertTrue(updated[1]);
+		assertEquals(stateB.getName(), order1.getStateDocument().getState());
+		assertEquals(stateB.getName(), orderRepo.findOne(order3.getId()).getStateDocument().getState());
+	}
+
+	@Test
+	public void testBatchDuplicateIds() {
+		Order order = orderRepo.save(new Order());
+		Order copy = orderRepo.findOne(order.getId());
+
+		// Only the first occurrence of an Entity is transitioned; the others are refreshed
+		//
+		boolean[] updated = ((BatchPersister<Order>)mongoPersister).setCurrent(
+				Arrays.asList(order, order, copy),
+				stateA,
+				stateB);
+
+		assertTrue(updated[0]);
+		assertFalse(updated[1]);
+		assertFalse(updated[2]);
+		assertEquals(stateB.getName(), order.getStateDocument().getState());
+		assertEquals(1, order.getStateDocument().getVersion());
+		assertEquals(stateB.getName(), copy.getStateDocument().getState());
+		assertEquals(1, orderRepo.findOne(order.getId()).getStateDocument().getVersion());
+	}
+
+	@Test
+	public void testEnsureIndexes() {
+		((MongoPersister<Order>)mongoPersister).ensureIndexes();
+
+		List<String> indexes = new ArrayList<String>();
+		for (IndexInfo index : this.mongoTemplate.indexOps(StateDocumentImpl.class).getIndexInfo()) {
+			indexes.add(index.getName());
+		}
+		assertTrue(indexes.contains("managedCollection_1_managedField_1_managedId_1"));
+		assertTrue(indexes.contains("state_1_updated_1"));
+	}
+
+	@Test
+	public void testAsyncStateChange() throws InterruptedException, ExecutionException {
+		Order order = orderRepo.save(new Order());
+		MongoPersister<Order> persister = (MongoPersister<Order>)mongoPersister;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		persister.setExecutor(executor);
+		try {
+			persister.setCurrentAsync(order, stateA, stateB).toCompletableFuture().get();
+			assertEquals(stateB.getName(), orderRepo.findOne(order.getId()).getStateDocument().getState());
+
+			try {
+				persister.setCurrentAsync(order, stateA, stateC).toCompletableFuture().get();
+				fail("Expected a StaleStateException");
+			} catch(ExecutionException e) {
+				assertTrue(e.getCause() instanceof StaleStateException);
+			}
+		} finally {
+			persister.setExecutor(null);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testAsyncStateChangeIsOffloaded() throws InterruptedException, ExecutionException {
+		Order order = orderRepo.save(new Order());
+		MongoPersister<Order> persister = (MongoPersister<Order>)mongoPersister;
+
+		// Without an Executor, updates run on the shared pool of daemon threads
+		//
+		Thread thread = CompletableFuture.supplyAsync(new Supplier<Thread>() {
+
+			@Override
+			public Thread get() {
+				return Thread.currentThread();
+			}
+		}, persister.getExecutor()).get();
+		assertTrue(thread.isDaemon());
+		assertTrue(thread.getName().startsWith("statefulj-mongo-"));
+
+		persister.setCurrentAsync(order, stateA, stateB).toCompletableFuture().get();
+		assertEquals(stateB.getName(), orderRepo.findOne(order.getId()).getStateDocument().getState());
+	}
+
 	@Test
 	public void testJPAId() throws StaleStateException {
 		Field field = this.jpaIdPersister.findIdField(JPAIdEntity.class);